@@ -0,0 +1,78 @@
+import java.io.Serializable;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Class Address is the compact identifier of a public key: the first 20 bytes
+// of the SHA-256 hash of the encoded key. UTXOs are paid to an address, and
+// the key behind it is only revealed by the transaction that spends them.
+// The addresses of the keys held by local wallets are interned, so such a key
+// is hashed only once per process instead of being encoded again with
+// UtilityMethods.getKeyString() for every lookup. The addresses of other keys
+// are computed whenever asked for, so that peers cannot fill the registry.
+public final class Address implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int LENGTH = 20;
+
+    // Interned addresses by key. Entries are never removed; a process only
+    // holds the keys of a few wallets.
+    private static final ConcurrentHashMap<PublicKey, Address> registry =
+            new ConcurrentHashMap<PublicKey, Address>();
+
+    private final byte[] id;
+    private final int hash;
+
+    // Constructor
+    private Address(PublicKey key) {
+        this.id = Arrays.copyOf(
+                UtilityMethods.messageDigestSHA256_toBytes(key.getEncoded()), LENGTH);
+        this.hash = Arrays.hashCode(this.id);
+    }
+
+    // Method for retrieving the address of the given key, the interned one if
+    // there is one.
+    public static Address of(PublicKey key) {
+        Address address = registry.get(key);
+        return address != null ? address : new Address(key);
+    }
+
+    // Method for interning the address of a key held by a local wallet.
+    public static Address intern(PublicKey key) {
+        return registry.computeIfAbsent(key, Address::new);
+    }
+
+    // Method for retrieving the number of interned addresses.
+    public static int registrySize() {
+        return registry.size();
+    }
+
+    public byte[] getID() {
+        return this.id.clone();
+    }
+
+    // Method for checking whether this is the address of the given key.
+    public boolean matches(PublicKey key) {
+        return this.equals(of(key));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Address))
+            return false;
+        Address other = (Address) o;
+        return this.hash == other.hash && Arrays.equals(this.id, other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public String toString() {
+        return HexFormat.of().formatHex(this.id);
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+// Class AddressIndex keeps, for every key that ever sent or received funds on a
+// blockchain, its unspent outputs, its running balance and its history of sent
+// and received transactions. It is updated one block at a time, so looking up
+// an address does not depend on the length of the chain. Keys are indexed by
+// their interned Address.
+//
+// Only the state of each address, its unspent outputs and balance, is
+// serialized. An index read back from a snapshot starts with empty histories,
+// which then hold only the blocks applied since, and hasCompleteHistory()
+// tells it apart.
+public class AddressIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final HashMap<Address, Entry> entries = new HashMap<Address, Entry>();
+    private transient boolean completeHistory = true;
+
+    // Class Entry holds what the index knows about a single address.
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        // outputs received, mining rewards included, in chain order
+        private transient ArrayList<UTXO> received = new ArrayList<UTXO>();
+        // inputs of the transactions sent
+        private transient ArrayList<UTXO> spent = new ArrayList<UTXO>();
+        private transient ArrayList<UTXO> rewards = new ArrayList<UTXO>();
+        private final LinkedHashMap<Outpoint, UTXO> unspent = new LinkedHashMap<Outpoint, UTXO>();
+        private transient ArrayList<Transaction> sentTransactions = new ArrayList<Transaction>();
+        private transient ArrayList<Transaction> receivedTransactions = new ArrayList<Transaction>();
+        private double gain = 0.0;
+        private double spending = 0.0;
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            this.received = new ArrayList<UTXO>();
+            this.spent = new ArrayList<UTXO>();
+            this.rewards = new ArrayList<UTXO>();
+            this.sentTransactions = new ArrayList<Transaction>();
+            this.receivedTransactions = new ArrayList<Transaction>();
+        }
+
+        public double getBalance() {
+            return this.gain - this.spending;
+        }
+
+        public ArrayList<UTXO> getReceived() {
+            return new ArrayList<UTXO>(this.received);
+        }
+
+        public ArrayList<UTXO> getSpent() {
+            return new ArrayList<UTXO>(this.spent);
+        }
+
+        public ArrayList<UTXO> getUnspent() {
+            return new ArrayList<UTXO>(this.unspent.values());
+        }
+
+        public ArrayList<UTXO> getRewards() {
+            return new ArrayList<UTXO>(this.rewards);
+        }
+
+        public ArrayList<Transaction> getSentTransactions() {
+            return new ArrayList<Transaction>(this.sentTransactions);
+        }
+
+        public ArrayList<Transaction> getReceivedTransactions() {
+            return new ArrayList<Transaction>(this.receivedTransactions);
+        }
+    }
+
+    // Method for applying the block found at the given height, given the UTXOs
+    // its inputs spent, as returned by UTXOSet.applyBlock(). The rules are the
+    // ones Blockchain.findRelatedUTXOs() used to apply while scanning the chain:
+    // the inputs of the genesis block are not considered spent, spending is
+    // charged to the sender of a transaction, and a reward only counts if it
+    // goes to the block's creator.
+    public void applyBlock(Block block, int height, ArrayList<UTXO> spent) {
+        int next = 0;
+        int size = block.getTotalNumberOfTransactions();
+        for (int i=0; i<size; i++) {
+            Transaction tx = block.getTransaction(i);
+            if (height != 0 && tx.getNumberOfInputs() > 0) {
+                Entry sender = this.entryOf(tx.getSender());
+                for (int x=0; x<tx.getNumberOfInputs(); x++) {
+                    // an input the UTXO set could not resolve is skipped
+                    if (next >= spent.size() || !spent.get(next).getOutpoint().equals(tx.getInput(x)))
+                        continue;
+                    UTXO utxo = spent.get(next++);
+                    Entry owner = this.entries.get(utxo.getReceiver());
+                    if (owner != null)
+                        owner.unspent.remove(tx.getInput(x));
+                    sender.spent.add(utxo);
+                    sender.spending += utxo.getFundTransferred();
+                }
+                sender.sentTransactions.add(tx);
+            }
+
+            for (int x=0; x<tx.getNumberOfOutputUTXOs(); x++) {
+                UTXO ux = tx.getOutputUTXO(x);
+                Entry receiver = this.entryOf(ux.getReceiver());
+                receiver.received.add(ux);
+                receiver.unspent.put(ux.getOutpoint(), ux);
+                receiver.gain += ux.getFundTransferred();
+                // a transaction with several outputs to the same key is listed once
+                ArrayList<Transaction> history = receiver.receivedTransactions;
+                if (history.isEmpty() || history.get(history.size() - 1) != tx)
+                    history.add(tx);
+            }
+        }
+
+        Transaction rt = block.getRewardTransaction();
+        if (rt != null && rt.getNumberOfOutputUTXOs() > 0) {
+            UTXO ux = rt.getOutputUTXO(0);
+            if (ux.getReceiver().matches(block.getCreator())) {
+                Entry miner = this.entryOf(block.getCreator());
+                miner.rewards.add(ux);
+                miner.received.add(ux);
+                miner.unspent.put(ux.getOutpoint(), ux);
+                miner.gain += ux.getFundTransferred();
+            }
+        }
+    }
+
+    // Method for undoing applyBlock() for the block found at the given height,
+    // given the UTXOs the block removed from the UTXO set. Every list is trimmed
+    // from the end, in the reverse order of applyBlock().
+    public void revertBlock(Block block, int height, ArrayList<UTXO> removed) {
+        Transaction rt = block.getRewardTransaction();
+        if (rt != null && rt.getNumberOfOutputUTXOs() > 0) {
+            UTXO ux = rt.getOutputUTXO(0);
+            if (ux.getReceiver().matches(block.getCreator())) {
+                Entry miner = this.entryOf(block.getCreator());
+                removeLast(miner.rewards);
+                removeLast(miner.received);
+                miner.unspent.remove(ux.getOutpoint());
+                miner.gain -= ux.getFundTransferred();
+            }
+        }
+
+        int next = removed.size() - 1;
+        for (int i=block.getTotalNumberOfTransactions()-1; i>=0; i--) {
+            Transaction tx = block.getTransaction(i);
+            // the transaction was listed once per receiver, with its first output to it
+            HashSet<Address> receivers = new HashSet<Address>();
+            boolean[] first = new boolean[tx.getNumberOfOutputUTXOs()];
+            for (int x=0; x<first.length; x++)
+                first[x] = receivers.add(tx.getOutputUTXO(x).getReceiver());
+            for (int x=first.length-1; x>=0; x--) {
+                UTXO ux = tx.getOutputUTXO(x);
+                Entry receiver = this.entryOf(ux.getReceiver());
+                removeLast(receiver.received);
+                receiver.unspent.remove(ux.getOutpoint());
+                receiver.gain -= ux.getFundTransferred();
+                if (first[x])
+                    removeLast(receiver.receivedTransactions);
+            }
+
+            if (height != 0 && tx.getNumberOfInputs() > 0) {
+                Entry sender = this.entryOf(tx.getSender());
+                removeLast(sender.sentTransactions);
+                for (int x=tx.getNumberOfInputs()-1; x>=0; x--) {
+                    // back into the unspent outputs of its owner
+                    if (next >= 0 && removed.get(next).getOutpoint().equals(tx.getInput(x))) {
+                        UTXO restored = removed.get(next--);
+                        removeLast(sender.spent);
+                        sender.spending -= restored.getFundTransferred();
+                        this.entryOf(restored.getReceiver()).unspent.put(tx.getInput(x), restored);
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> void removeLast(ArrayList<T> list) {
+        list.remove(list.size() - 1);
+    }
+
+    // Method for retrieving the entry of the given key, or null if the key does
+    // not appear on the chain.
+    public Entry get(PublicKey key) {
+        return this.get(Address.of(key));
+    }
+
+    public Entry get(Address address) {
+        return this.entries.get(address);
+    }
+
+    private Entry entryOf(PublicKey key) {
+        return this.entryOf(Address.of(key));
+    }
+
+    private Entry entryOf(Address address) {
+        return this.entries.computeIfAbsent(address, k -> new Entry());
+    }
+
+    // Method for checking whether the histories go back to the genesis block,
+    // which is not the case for an index read back from a snapshot.
+    public boolean hasCompleteHistory() {
+        return this.completeHistory;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.completeHistory = false;
+    }
+
+    // Method for retrieving the number of indexed addresses.
+    public int size() {
+        return this.entries.size();
+    }
+}
@@ -1,17 +1,28 @@
 import jdk.jshell.execution.Util;
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 // import java.util.Calendar;
 
-public class Block implements Serializable {
+public class Block implements ChainLink, Serializable {
     private static final long serialVersionUID = 1L;
     private int difficultyLevel = Configuration.blockMiningDifficultyLevel();   // default difficulty level
+    // compact 256-bit target; 0 means the block uses the leading-zero difficulty level
+    private int targetBits = 0;
+    private transient byte[] target;
     private ArrayList<Transaction> transactions = new ArrayList<Transaction>();
     private long timestamp;
     private String previousBlockHashID;
-    private int nonce = 0;   // maybe change to BigInteger
-    private String hashID;
+    private long nonce = 0;
+    // rolled whenever the nonce range is exhausted, which changes the header prefix
+    private long extraNonce = 0;
+    // the block's hash as raw digest bytes; the binary string form of
+    // hashID is only derived from it when requested
+    private byte[] hash;
+    private transient String hashID;
 
     // for recording the miner/creator of the block
     private PublicKey creator;
@@ -24,6 +35,10 @@ public class Block implements Serializable {
     // the transaction to reward the miner
     private Transaction rewardTransaction = null;
 
+    // Merkle tree of the current transactions; dropped whenever the set of
+    // transactions changes and rebuilt on demand
+    private transient MerkleTree merkleTree = null;
+
     // maximum number of transactions per block
     public final static int TRANSACTION_UPPER_LIMIT = 100;
     // minimum number of valid transactions before starting a block
@@ -37,18 +52,76 @@ public class Block implements Serializable {
         this.creator = creator;
     }
 
+    // Constructor for a block whose hash must not exceed the 256-bit target
+    // encoded in targetBits.
+    public Block(String previousBlockHashID, PublicKey creator, int targetBits) {
+        this(previousBlockHashID,
+                UtilityMethods.targetToDifficultyLevel(UtilityMethods.decodeCompactTarget(targetBits)),
+                creator);
+        this.targetBits = targetBits;
+    }
+
     protected String computeHashID() {
-        StringBuilder sb = new StringBuilder();   // for gathering together the hash input
-        sb.append(this.previousBlockHashID + Long.toHexString(this.timestamp));
+        return UtilityMethods.toBinaryString(this.computeHash());
+    }
+
+    // Method for computing the block's hash as an array of bytes.
+    protected byte[] computeHash() {
+        return new BlockHeaderHasher(this).hash(this.nonce);
+    }
+
+    // Method for verifying the proof of work: the stored hash must meet the
+    // block's target and match the hash recomputed from the block's content.
+    public boolean verifyProofOfWork() {
+        return this.hash != null
+                && this.hashMeetsTarget(this.hash)
+                && Arrays.equals(this.computeHash(), this.hash);
+    }
 
-        sb.append(this.computeMerkleRoot());
-        sb.append(String.valueOf(nonce));
-        //sb.append(Integer.toHexString(this.difficultyLevel) + this.nonce);
+    // Method for checking a hash against the block's target, or against its
+    // difficulty level for blocks without a target.
+    protected boolean hashMeetsTarget(byte[] hash) {
+        if (this.targetBits == 0)
+            return UtilityMethods.hashMeetsDifficultyLevel(hash, this.difficultyLevel);
+        if (this.target == null)
+            this.target = UtilityMethods.toTargetBytes(UtilityMethods.decodeCompactTarget(this.targetBits));
+        return UtilityMethods.hashMeetsTarget(hash, this.target);
+    }
+
+    // Method for retrieving the 256-bit target of the block. For blocks without
+    // a target, this is the target that requires the same amount of work as
+    // the difficulty level.
+    public BigInteger getTarget() {
+        if (this.targetBits == 0)
+            return UtilityMethods.difficultyLevelToTarget(this.difficultyLevel);
+        return UtilityMethods.decodeCompactTarget(this.targetBits);
+    }
+
+    // Method for assembling the part of the hash input that does not depend on
+    // the nonce (see BlockHeader.computeHeaderPrefix()).
+    protected String computeHeaderPrefix() {
+        return BlockHeader.computeHeaderPrefix(this.previousBlockHashID, this.timestamp,
+                this.computeMerkleRoot(), this.targetBits, this.extraNonce);
+    }
 
-        // Compute hash as an array of bytes
-        byte[] b = UtilityMethods.messageDigestSHA256_toBytes(sb.toString());
+    // Method for extracting the header of the block, i.e., the block without its
+    // transactions.
+    public BlockHeader getHeader() {
+        return new BlockHeader(this.previousBlockHashID, this.timestamp, this.computeMerkleRoot(),
+                this.difficultyLevel, this.targetBits, this.nonce, this.extraNonce,
+                this.hash, this.creator, this.signature);
+    }
 
-        return UtilityMethods.toBinaryString(b);
+    // Method for building the proof that the transaction with the given hash ID
+    // is inside the block. Returns null if it is not.
+    public MerkleProof getMerkleProof(String transactionHashID) {
+        String[] leaves = this.getLeafHashes();
+        for (int i=0; i<leaves.length; i++) {
+            if (leaves[i].equals(transactionHashID)) {
+                return this.getMerkleTree().getProof(i);
+            }
+        }
+        return null;
     }
 
     // Method for adding a new transaction to the block.
@@ -61,6 +134,7 @@ public class Block implements Serializable {
         // only prior to the block has been mined and signed
         if (key.equals(this.getCreator()) && !this.isMined() && !this.isSigned()) {
             this.transactions.add(t);
+            this.merkleTree = null;
             return true;
         }
         else
@@ -70,9 +144,15 @@ public class Block implements Serializable {
     /* Getter methods */
 
     public String getHashID() {
+        if (this.hashID == null && this.hash != null)
+            this.hashID = UtilityMethods.toBinaryString(this.hash);
         return this.hashID;
     }
 
+    public byte[] getHash() {
+        return this.hash == null ? null : this.hash.clone();
+    }
+
     public PublicKey getCreator() {
         return this.creator;
     }
@@ -85,10 +165,14 @@ public class Block implements Serializable {
         return this.signature != null;
     }
 
-    public int getNonce() {
+    public long getNonce() {
         return this.nonce;
     }
 
+    public long getExtraNonce() {
+        return this.extraNonce;
+    }
+
     public long getTimeStamp() {
         return this.timestamp;
     }
@@ -101,6 +185,14 @@ public class Block implements Serializable {
         return this.difficultyLevel;
     }
 
+    public int getTargetBits() {
+        return this.targetBits;
+    }
+
+    public String getMerkleRoot() {
+        return this.computeMerkleRoot();
+    }
+
     public int getTotalNumberOfTransactions() {
         return this.transactions.size();
     }
@@ -119,17 +211,27 @@ public class Block implements Serializable {
         return this.transactions.size() * Transaction.TRANSACTION_FEE;
     }
 
-    // Method for mining the block
-    protected boolean mineTheBlock(PublicKey key) {
+    // Method for mining the block with a parallel nonce search engine. Mining
+    // stops without success as soon as abortSignal is raised.
+    protected boolean mineTheBlock(PublicKey key, NonceSearchEngine engine,
+                                   AtomicBoolean abortSignal) {
         // Only the creator of the block can mine it, provided it hasn't
         // been mined yet
         if (!this.mined && key.equals(this.getCreator())) {
-            this.hashID = this.computeHashID();
-            while (!UtilityMethods.hashMeetsDifficultyLevel(this.hashID, this.difficultyLevel)) {
-                this.nonce++;
-                this.hashID = this.computeHashID();
+            while (!abortSignal.get() && !Thread.currentThread().isInterrupted()) {
+                Long winner = engine.search(this, abortSignal);
+                if (winner != null) {
+                    this.nonce = winner;
+                    this.hash = this.computeHash();
+                    this.mined = true;
+                    break;
+                }
+                if (abortSignal.get())
+                    break;
+                // Nonce range exhausted: roll the extra nonce, which changes
+                // the header prefix, and search again
+                this.extraNonce++;
             }
-            this.mined = true;
         }
         return this.mined;
     }
@@ -139,14 +241,17 @@ public class Block implements Serializable {
         // block's creator and cannot be changed once it has been added
         if (this.rewardTransaction == null && pk.equals(this.creator)) {
             this.rewardTransaction = rewardTransaction;
+            this.merkleTree = null;
             return true;
         }
         else
             return false;
     }
 
+    // The signature is over the raw hash of the block.
     public boolean verifySignature(PublicKey pk) {
-        return UtilityMethods.verifySignature(pk, this.signature, this.getHashID());
+        return this.hash != null && this.signature != null
+                && UtilityMethods.verifySignature(pk, this.signature, this.hash);
     }
 
     // Method for setting the signature field once it has been generated.
@@ -155,7 +260,7 @@ public class Block implements Serializable {
         if (!this.isSigned()) {
             if (pk.equals(this.creator)) {
                 // signature must be verified before setting
-                if (UtilityMethods.verifySignature(pk, signature, this.getHashID())) {
+                if (this.hash != null && UtilityMethods.verifySignature(pk, signature, this.hash)) {
                     this.signature = signature;
                     return true;
                 }
@@ -164,8 +269,24 @@ public class Block implements Serializable {
         return false;
     }
 
-    // Method for computing the Merkle tree root.
+    // Method for computing the Merkle tree root. The tree is built at most once
+    // per set of transactions; once the block is mined, it never changes again.
     private String computeMerkleRoot() {
+        return this.getMerkleTree().getRoot();
+    }
+
+    private MerkleTree getMerkleTree() {
+        MerkleTree tree = this.merkleTree;
+        if (tree == null) {
+            tree = new MerkleTree(this.getLeafHashes());
+            this.merkleTree = tree;
+        }
+        return tree;
+    }
+
+    // Method for collecting the hash IDs of the transactions, followed by the
+    // one of the reward transaction, if any.
+    private String[] getLeafHashes() {
         String[] hashes;
         if (this.rewardTransaction == null) {   // miner is allowed to refuse the reward
             hashes = new String[this.transactions.size()];
@@ -178,14 +299,16 @@ public class Block implements Serializable {
                 hashes[i] = this.transactions.get(i).getHashID();
             hashes[hashes.length - 1] = this.rewardTransaction.getHashID();
         }
-        return UtilityMethods.computeMerkleTreeRootHash(hashes);
+        return hashes;
     }
 
     public boolean deleteTransaction(Transaction tx, PublicKey pk) {
         // Only the block's creator is allowed to delete it, provided it
         // has not been mined or signed yet
-        if (!this.isMined() && !this.isSigned() && pk.equals(this.creator))
+        if (!this.isMined() && !this.isSigned() && pk.equals(this.creator)) {
+            this.merkleTree = null;
             return this.transactions.remove(tx);
+        }
         else
             return false;
     }
@@ -195,6 +318,7 @@ public class Block implements Serializable {
         // that the block has not been mined or signed yet
         if (!this.isMined() && !this.isSigned() && pk.equals(this.creator)) {
             Transaction tx = this.transactions.remove(index);
+            this.merkleTree = null;
             return tx != null;
         }
         else
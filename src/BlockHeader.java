@@ -0,0 +1,133 @@
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+// Class BlockHeader holds everything of a block except its transactions: enough
+// to check the block's proof of work, its signature and its place in the chain,
+// and, through the Merkle root, whether a given transaction is inside it.
+// Light wallets keep a chain of headers instead of full blocks.
+public class BlockHeader implements ChainLink, Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String previousBlockHashID;
+    private final long timestamp;
+    private final String merkleRoot;
+    private final int difficultyLevel;
+    private final int targetBits;
+    private final long nonce;
+    private final long extraNonce;
+    private final byte[] hash;
+    private transient String hashID;
+    private final PublicKey creator;
+    private final byte[] signature;
+
+    // Constructor
+    public BlockHeader(String previousBlockHashID, long timestamp, String merkleRoot,
+                       int difficultyLevel, int targetBits, long nonce, long extraNonce,
+                       byte[] hash, PublicKey creator, byte[] signature) {
+        this.previousBlockHashID = previousBlockHashID;
+        this.timestamp = timestamp;
+        this.merkleRoot = merkleRoot;
+        this.difficultyLevel = difficultyLevel;
+        this.targetBits = targetBits;
+        this.nonce = nonce;
+        this.extraNonce = extraNonce;
+        this.hash = hash == null ? null : hash.clone();
+        this.creator = creator;
+        this.signature = signature == null ? null : signature.clone();
+    }
+
+    // Method for assembling the part of a block's hash input that does not depend
+    // on the nonce: the previous hash ID, the timestamp, the Merkle root, the
+    // target and the extra nonce.
+    public static String computeHeaderPrefix(String previousBlockHashID, long timestamp,
+                                             String merkleRoot, int targetBits, long extraNonce) {
+        StringBuilder sb = new StringBuilder();   // for gathering together the hash input
+        sb.append(previousBlockHashID + Long.toHexString(timestamp));
+
+        sb.append(merkleRoot);
+        if (targetBits != 0)
+            sb.append(String.format("%08x", targetBits));
+        // Fixed width, so that the extra nonce and the nonce cannot run into each
+        // other. Omitted while zero, so blocks mined before it existed still verify.
+        if (extraNonce != 0)
+            sb.append(String.format("%016x", extraNonce));
+        return sb.toString();
+    }
+
+    protected String computeHeaderPrefix() {
+        return computeHeaderPrefix(this.previousBlockHashID, this.timestamp,
+                this.merkleRoot, this.targetBits, this.extraNonce);
+    }
+
+    // Method for verifying the proof of work: the stored hash must meet the
+    // header's target and match the hash recomputed from the header.
+    public boolean verifyProofOfWork() {
+        if (this.hash == null)
+            return false;
+        boolean meetsTarget = this.targetBits == 0
+                ? UtilityMethods.hashMeetsDifficultyLevel(this.hash, this.difficultyLevel)
+                : UtilityMethods.hashMeetsTarget(this.hash, UtilityMethods.toTargetBytes(
+                        UtilityMethods.decodeCompactTarget(this.targetBits)));
+        return meetsTarget && Arrays.equals(
+                new BlockHeaderHasher(this.computeHeaderPrefix()).hash(this.nonce), this.hash);
+    }
+
+    public boolean verifySignature(PublicKey pk) {
+        return this.hash != null && this.signature != null
+                && UtilityMethods.verifySignature(pk, this.signature, this.hash);
+    }
+
+    // Method for retrieving the 256-bit target of the header. For headers without
+    // a target, this is the target that requires the same amount of work as
+    // the difficulty level.
+    public BigInteger getTarget() {
+        if (this.targetBits == 0)
+            return UtilityMethods.difficultyLevelToTarget(this.difficultyLevel);
+        return UtilityMethods.decodeCompactTarget(this.targetBits);
+    }
+
+    /* Getter methods */
+
+    public String getHashID() {
+        if (this.hashID == null && this.hash != null)
+            this.hashID = UtilityMethods.toBinaryString(this.hash);
+        return this.hashID;
+    }
+
+    public byte[] getHash() {
+        return this.hash == null ? null : this.hash.clone();
+    }
+
+    public String getPreviousBlockHashID() {
+        return this.previousBlockHashID;
+    }
+
+    public long getTimeStamp() {
+        return this.timestamp;
+    }
+
+    public String getMerkleRoot() {
+        return this.merkleRoot;
+    }
+
+    public int getDifficultyLevel() {
+        return this.difficultyLevel;
+    }
+
+    public int getTargetBits() {
+        return this.targetBits;
+    }
+
+    public long getNonce() {
+        return this.nonce;
+    }
+
+    public long getExtraNonce() {
+        return this.extraNonce;
+    }
+
+    public PublicKey getCreator() {
+        return this.creator;
+    }
+}
@@ -0,0 +1,69 @@
+import java.security.MessageDigest;
+
+// Class BlockHeaderHasher caches the digest state (midstate) of a block's fixed
+// header prefix, i.e., the previous hash ID, the timestamp and the Merkle root.
+// Every hash attempt clones the midstate and only feeds in the nonce, so its cost
+// does not depend on the number of transactions inside the block.
+// Instances are not thread-safe; each mining thread must work on its own copy.
+public class BlockHeaderHasher {
+    // Enough room for the decimal form of any long, e.g. "-9223372036854775808"
+    private static final int MAX_NONCE_DIGITS = 20;
+
+    private final MessageDigest midstate;
+    private final byte[] nonceBuffer = new byte[MAX_NONCE_DIGITS];
+
+    // Constructor
+    public BlockHeaderHasher(Block block) {
+        this(block.computeHeaderPrefix());
+    }
+
+    // Constructor for hashing a header prefix computed elsewhere, e.g., from a
+    // BlockHeader.
+    public BlockHeaderHasher(String headerPrefix) {
+        this.midstate = UtilityMethods.newMessageDigest();
+        this.midstate.update(headerPrefix.getBytes());
+    }
+
+    // Private constructor used solely for the purpose of copying.
+    private BlockHeaderHasher(MessageDigest midstate) {
+        this.midstate = midstate;
+    }
+
+    // Method for creating an independent hasher sharing the same midstate.
+    public BlockHeaderHasher copy() {
+        return new BlockHeaderHasher(cloneDigest(this.midstate));
+    }
+
+    // Method for hashing the block header with the given nonce. The result equals
+    // the digest of the header prefix followed by String.valueOf(nonce).
+    public byte[] hash(long nonce) {
+        MessageDigest md = cloneDigest(this.midstate);
+        int start = writeDecimal(nonce, this.nonceBuffer);
+        md.update(this.nonceBuffer, start, this.nonceBuffer.length - start);
+        return md.digest();
+    }
+
+    // Method for writing the ASCII decimal digits of v at the end of buffer.
+    // Returns the index of the first written byte.
+    private static int writeDecimal(long v, byte[] buffer) {
+        // Work on the non-positive value, since -Long.MIN_VALUE overflows
+        long x = v < 0 ? v : -v;
+        int i = buffer.length;
+        do {
+            buffer[--i] = (byte) ('0' - (x % 10));
+            x /= 10;
+        } while (x != 0);
+        if (v < 0)
+            buffer[--i] = '-';
+        return i;
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest md) {
+        try {
+            return (MessageDigest) md.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+// Class BlockStore keeps the blocks of a ledger on disk, in chain order, in a
+// directory of append-only segment files. Every block is written as a record
+//     body length (4 bytes) | CRC-32 of the body (4 bytes) | body
+// whose body holds the block's hash ID, the hash ID of its predecessor and the
+// serialized block. Records are written through a FileChannel and read back
+// through a memory mapping of their segment; where each block's record lies is
+// kept in an index, which is rebuilt by scanning the segments when the store is
+// opened. The scan stops at the first record that is incomplete, fails its
+// checksum or does not link to the record before it, and the files are cut
+// there, so a crash while writing loses at most the blocks that had not been
+// synced yet. Syncs to disk are batched, one every so many writes.
+//
+// Removing blocks from the end, e.g. when the ledger switches branches, only
+// moves the write position back and marks the new end. The records left behind
+// are overwritten by the next blocks, and any that survive do not link to the
+// record before them, so a later scan never takes them back. For the same
+// reason, a segment that is left for the next one is marked as such. Whoever
+// still needs a block that is about to be removed, e.g. a ledger that reads
+// its blocks lazily, registers a TruncateListener to read it first.
+public class BlockStore<T extends ChainLink> implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    // lengths marking the end of the store and the end of a segment
+    private static final int END = 0;
+    private static final int NEXT_SEGMENT = -1;
+    private static final String SEGMENT_FORMAT = "blocks-%05d.dat";
+
+    private final File directory;
+    private final long segmentSize;
+    private final int syncInterval;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ArrayList<Segment> segments = new ArrayList<Segment>();
+    private final ArrayList<Location> locations = new ArrayList<Location>();
+    private final ArrayList<TruncateListener> listeners = new ArrayList<TruncateListener>();
+    // segment being written, and where the next record goes in it
+    private int current = 0;
+    private long position = 0;
+    private int unsynced = 0;
+
+    // Class Segment is one file of the store.
+    private static class Segment {
+        private final FileChannel channel;
+        private MappedByteBuffer map = null;
+
+        private Segment(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    // Interface TruncateListener is told before blocks are removed from the
+    // store, given the number of blocks that are kept.
+    public interface TruncateListener {
+        void truncating(int size) throws IOException;
+    }
+
+    // Class Location tells where the serialized block of a record lies.
+    private static class Location {
+        private final int segment;
+        private final long record;
+        private final long offset;
+        private final int length;
+        private final String hashID;
+
+        private Location(int segment, long record, long offset, int length, String hashID) {
+            this.segment = segment;
+            this.record = record;
+            this.offset = offset;
+            this.length = length;
+            this.hashID = hashID;
+        }
+    }
+
+    // Constructor
+    public BlockStore(File directory) throws IOException {
+        this(directory, Configuration.blockStoreSegmentSize(), Configuration.blockStoreSyncInterval());
+    }
+
+    public BlockStore(File directory, long segmentSize, int syncInterval) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("cannot create block store " + directory);
+        // Only one process at a time may use the store
+        this.lockChannel = FileChannel.open(new File(directory, "lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = this.lockChannel.tryLock();
+        }
+        catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            this.lockChannel.close();
+            throw new IOException("block store " + directory + " is in use");
+        }
+        this.lock = lock;
+        try {
+            this.recover();
+        }
+        catch (IOException e) {
+            this.close();
+            throw e;
+        }
+    }
+
+    // Method for rebuilding the index from the segment files, cutting them
+    // after the last record that is intact and links to the previous one.
+    private void recover() throws IOException {
+        boolean end = false;
+        boolean next = false;
+        for (int i=0; !end; i++) {
+            File file = this.segmentFile(i);
+            if (!file.exists())
+                break;
+            Segment segment = new Segment(file);
+            this.segments.add(segment);
+            long size = segment.channel.size();
+            long pos = 0;
+            next = false;
+            while (pos < size && !next) {
+                next = readLength(segment.channel, pos, size) == NEXT_SEGMENT;
+                if (next)
+                    pos += HEADER_SIZE;
+                else {
+                    Location location = this.readRecord(segment.channel, i, pos, size);
+                    if (location == null)
+                        break;
+                    this.locations.add(location);
+                    pos = location.offset + location.length;
+                }
+            }
+            if (pos < size)
+                segment.channel.truncate(pos);
+            end = pos < size && !next;
+            this.current = i;
+            this.position = pos;
+        }
+        // Segments after the end of the ledger hold nothing that counts
+        for (int i=this.segments.size(); this.segmentFile(i).exists(); i++)
+            this.segmentFile(i).delete();
+        if (this.segments.isEmpty() || next) {
+            this.current = this.segments.size();
+            this.position = 0;
+            this.segments.add(new Segment(this.segmentFile(this.current)));
+        }
+    }
+
+    private static int readLength(FileChannel channel, long pos, long size)
+            throws IOException {
+        if (size - pos < HEADER_SIZE)
+            return END;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, pos);
+        return header.getInt(0);
+    }
+
+    // Method for reading the record at the given position while recovering.
+    // Returns null if the record is not intact or does not link to the last
+    // block of the index.
+    private Location readRecord(FileChannel channel, int segment, long pos, long size)
+            throws IOException {
+        if (size - pos < HEADER_SIZE)
+            return null;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, pos);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length <= 0 || length > size - pos - HEADER_SIZE)
+            return null;
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(channel, body, pos + HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        if ((int) crc.getValue() != checksum)
+            return null;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+        String hashID = in.readUTF();
+        String previousHashID = in.readUTF();
+        if (!this.locations.isEmpty()
+                && !previousHashID.equals(this.locations.get(this.locations.size() - 1).hashID))
+            return null;
+        int data = in.available();
+        return new Location(segment, pos, pos + HEADER_SIZE + length - data, data, hashID);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long pos)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, pos + buffer.position());
+            if (n < 0)
+                throw new IOException("unexpected end of segment");
+        }
+    }
+
+    private File segmentFile(int i) {
+        return new File(this.directory, String.format(SEGMENT_FORMAT, i));
+    }
+
+    // Method for retrieving the number of blocks in the store.
+    public synchronized int size() {
+        return this.locations.size();
+    }
+
+    // Method for retrieving the hash ID of the block at the given height
+    // without reading the block.
+    public synchronized String hashOf(int height) {
+        return this.locations.get(height).hashID;
+    }
+
+    // Method for reading the block at the given height.
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int height) throws IOException {
+        Location location = this.locations.get(height);
+        Segment segment = this.segments.get(location.segment);
+        MappedByteBuffer map = segment.map;
+        if (map == null || map.capacity() < location.offset + location.length) {
+            map = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+            segment.map = map;
+        }
+        byte[] data = new byte[location.length];
+        map.get((int) location.offset, data);
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+            return (T) in.readObject();
+        }
+        catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Method for adding a block after the last one. The block must be the
+    // successor of the last block, or it will not survive a restart.
+    public synchronized void append(T block) throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bo);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeUTF(block.getHashID());
+        out.writeUTF(block.getPreviousBlockHashID());
+        out.flush();
+        int start = bo.size();
+        ObjectOutputStream oo = new ObjectOutputStream(bo);
+        oo.writeObject(block);
+        oo.close();
+
+        ByteBuffer record = ByteBuffer.wrap(bo.toByteArray());
+        int length = record.capacity() - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+
+        if (this.position > 0 && this.position + record.capacity() > this.segmentSize)
+            this.nextSegment();
+        this.write(record, this.position);
+        this.locations.add(new Location(this.current, this.position, this.position + start,
+                record.capacity() - start, block.getHashID()));
+        this.position += record.capacity();
+        this.written();
+    }
+
+    // Method for registering a listener to be told before blocks are removed.
+    public synchronized void addTruncateListener(TruncateListener listener) {
+        this.listeners.add(listener);
+    }
+
+    // Method for removing the blocks from the given height on.
+    public synchronized void truncate(int size) throws IOException {
+        if (size >= this.locations.size())
+            return;
+        for (int i=0; i<this.listeners.size(); i++)
+            this.listeners.get(i).truncating(size);
+        Location first = this.locations.get(size);
+        while (this.locations.size() > size)
+            this.locations.remove(this.locations.size() - 1);
+        this.current = first.segment;
+        this.position = first.record;
+        this.writeMarker(END);
+        this.written();
+    }
+
+    private void nextSegment() throws IOException {
+        this.writeMarker(NEXT_SEGMENT);
+        this.segments.get(this.current).channel.force(false);
+        this.current++;
+        if (this.current == this.segments.size())
+            this.segments.add(new Segment(this.segmentFile(this.current)));
+        this.position = 0;
+    }
+
+    private void writeMarker(int length) throws IOException {
+        ByteBuffer marker = ByteBuffer.allocate(HEADER_SIZE);
+        marker.putInt(0, length);
+        this.write(marker, this.position);
+    }
+
+    private void write(ByteBuffer buffer, long pos) throws IOException {
+        FileChannel channel = this.segments.get(this.current).channel;
+        while (buffer.hasRemaining())
+            channel.write(buffer, pos + buffer.position());
+    }
+
+    private void written() throws IOException {
+        if (++this.unsynced >= this.syncInterval)
+            this.sync();
+    }
+
+    // Method for forcing everything written so far to disk.
+    public synchronized void sync() throws IOException {
+        if (this.unsynced > 0) {
+            this.segments.get(this.current).channel.force(false);
+            this.unsynced = 0;
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        try {
+            this.sync();
+            for (int i=0; i<this.segments.size(); i++)
+                this.segments.get(i).channel.close();
+        }
+        finally {
+            if (this.lock.isValid())
+                this.lock.release();
+            this.lockChannel.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+// Class BlockTree keeps every block a ledger knows of, keyed by hash ID, both
+// on the main chain and on the side branches forking off it. Each node knows
+// the total work of the chain ending at it, which decides what the main chain
+// is: the branch with the most work, not the longest one.
+//
+// A tree restored from an index snapshot starts at the block of the snapshot
+// rather than at the genesis block, and is extended below it when needed.
+public class BlockTree {
+    private final HashMap<String, Node> nodes = new HashMap<String, Node>();
+    private Node root = null;
+
+    // Class Node holds a block and its place in the tree.
+    public static class Node {
+        private final Block block;
+        // null for the root, until the tree is extended below it
+        private Node parent;
+        private final int height;
+        private final BigInteger chainWork;
+        // UTXOs the block removed from the UTXO set when it was last connected,
+        // needed to disconnect it again
+        private ArrayList<UTXO> spentUTXOs = null;
+        private boolean invalid = false;
+
+        // Constructor
+        Node(Block block, Node parent) {
+            this.block = block;
+            this.parent = parent;
+            this.height = parent == null ? 0 : parent.height + 1;
+            BigInteger work = BlockTree.work(block);
+            this.chainWork = parent == null ? work : parent.chainWork.add(work);
+        }
+
+        private Node(Block block, int height, BigInteger chainWork) {
+            this.block = block;
+            this.parent = null;
+            this.height = height;
+            this.chainWork = chainWork;
+        }
+
+        public Block getBlock() {
+            return this.block;
+        }
+
+        public Node getParent() {
+            return this.parent;
+        }
+
+        public int getHeight() {
+            return this.height;
+        }
+
+        public BigInteger getChainWork() {
+            return this.chainWork;
+        }
+
+        public ArrayList<UTXO> getSpentUTXOs() {
+            return this.spentUTXOs;
+        }
+
+        public void setSpentUTXOs(ArrayList<UTXO> spentUTXOs) {
+            this.spentUTXOs = spentUTXOs;
+        }
+
+        public boolean isInvalid() {
+            return this.invalid;
+        }
+
+        // A block found invalid is never connected again, nor are blocks built on it.
+        public void markInvalid() {
+            this.invalid = true;
+        }
+
+        // Method for retrieving the ancestor of this node at the given height,
+        // the node itself included.
+        public Node ancestor(int height) {
+            Node node = this;
+            while (node != null && node.height > height)
+                node = node.parent;
+            return node;
+        }
+    }
+
+    // Method for computing the expected number of hashes it takes to mine a
+    // block, i.e., 2^256 / (target + 1).
+    public static BigInteger work(ChainLink link) {
+        return BigInteger.ONE.shiftLeft(256).divide(link.getTarget().add(BigInteger.ONE));
+    }
+
+    // Method for adding a block to the tree, below its parent. The very first
+    // block added is the root. Returns null if the parent is unknown.
+    public Node add(Block block) {
+        Node parent = this.nodes.get(block.getPreviousBlockHashID());
+        if (parent == null && !this.nodes.isEmpty())
+            return null;
+        Node node = new Node(block, parent);
+        if (parent != null && parent.isInvalid())
+            node.markInvalid();
+        this.nodes.put(block.getHashID(), node);
+        if (parent == null)
+            this.root = node;
+        return node;
+    }
+
+    // Method for adding the root of an empty tree that leaves out the blocks
+    // below it, given its height and the total work of the chain ending at it.
+    public Node addRoot(Block block, int height, BigInteger chainWork) {
+        this.root = new Node(block, height, chainWork);
+        this.nodes.put(block.getHashID(), this.root);
+        return this.root;
+    }
+
+    // Method for adding the parent of the root to a tree that starts above the
+    // genesis block. The parent becomes the root; the nodes above keep their
+    // height and work.
+    public Node addRootParent(Block block) {
+        Node node = new Node(block, this.root.height - 1,
+                this.root.chainWork.subtract(BlockTree.work(this.root.block)));
+        this.root.parent = node;
+        this.nodes.put(block.getHashID(), node);
+        this.root = node;
+        return node;
+    }
+
+    public Node getRoot() {
+        return this.root;
+    }
+
+    public Node get(String hashID) {
+        return this.nodes.get(hashID);
+    }
+
+    public boolean contains(String hashID) {
+        return this.nodes.containsKey(hashID);
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+
+    // Method for listing the nodes from just above ancestor up to node, in
+    // chain order.
+    public static ArrayList<Node> path(Node ancestor, Node node) {
+        ArrayList<Node> path = new ArrayList<Node>();
+        for (Node n = node; n != ancestor; n = n.parent)
+            path.add(n);
+        Collections.reverse(path);
+        return path;
+    }
+
+    // Method for finding the last common ancestor of two nodes.
+    public static Node findFork(Node a, Node b) {
+        a = a.ancestor(b.height);
+        b = b.ancestor(a.height);
+        while (a != b) {
+            a = a.parent;
+            b = b.parent;
+        }
+        return a;
+    }
+}
@@ -1,11 +1,30 @@
 import java.security.PublicKey;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.IntFunction;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 public class Blockchain implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private LedgerList<Block> blockchain;
+	// outputs not spent yet, and the same per address along with the history
+	// of each address; not serialized, but rebuilt from the blocks on first use
+	// and then kept up to date by addBlock()
+	private transient UTXOSet utxoSet = null;
+	private transient AddressIndex addressIndex = null;
+	// where every transaction is found on the chain; maintained the same way
+	private transient TransactionIndex transactionIndex = null;
+	// every known block, side branches included; built along with the indexes
+	private transient BlockTree blockTree = null;
+	// transactions of the blocks the chain switched away from that did not
+	// come back with the new branch; kept until taken
+	private transient ArrayList<Transaction> disconnectedTransactions = null;
+	// height of the index snapshot the chain was loaded with, or -1 if none
+	// was restored
+	private transient int restoredSnapshotHeight = -1;
 
 	public static final double MINING_REWARD = 100.0;
 
@@ -15,12 +34,80 @@ public class Blockchain implements Serializable {
 		this.blockchain.add(genesisBlock);
 	}
 
-	// Private constructor used by this class solely for the purpose of copying.
+	// Private constructor used by this class for copying and loading.
 	private Blockchain(LedgerList<Block> chain) {
-		this.blockchain = new LedgerList<Block>();
-		int size = chain.size();
-		for (int i=0; i<size; i++)
-			this.blockchain.add(chain.findByIndex(i));
+		this.blockchain = chain;
+	}
+
+	// Field initializers do not run on deserialization
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.restoredSnapshotHeight = -1;
+	}
+
+	// Method for loading the blockchain kept in the given store, which stays
+	// attached to it. Returns null if the store is empty.
+	public static Blockchain load(BlockStore<Block> store) throws IOException {
+		if (store.size() == 0)
+			return null;
+		return new Blockchain(LedgerList.load(store));
+	}
+
+	// Method for loading the blockchain kept in the given store, along with the
+	// indexes saved to the given snapshot file. Only the blocks added after the
+	// snapshot are read, validated and replayed: those up to it were validated
+	// before the snapshot was saved, and are read from the store when first
+	// needed. The store is cut before the first block that does not validate. The snapshot is ignored if it cannot be read or was taken
+	// on a block that is no longer on the chain, which
+	// getRestoredSnapshotHeight() then tells.
+	public static Blockchain load(BlockStore<Block> store, File snapshot) throws IOException {
+		Blockchain ledger = load(store);
+		if (ledger == null)
+			return null;
+		IndexSnapshot indexes = null;
+		if (snapshot.exists()) {
+			try {
+				indexes = IndexSnapshot.read(snapshot);
+			}
+			catch (IOException e) {
+				System.out.println("Warning: index snapshot cannot be read: " + e.getMessage());
+			}
+		}
+		if (indexes != null && !ledger.canRestore(indexes))
+			indexes = null;
+		int valid = validateBlockchain(ledger, indexes == null ? 0 : indexes.getHeight() + 1);
+		if (valid < ledger.size()) {
+			System.out.printf("Warning: stored blockchain does not validate, "
+					+ "%d blocks out of %d kept%n", valid, ledger.size());
+			store.truncate(valid);
+			ledger = load(store);
+			if (ledger == null)
+				return null;
+		}
+		if (indexes != null)
+			ledger.restoreIndexes(indexes);
+		return ledger;
+	}
+
+	// Method for retrieving the height of the index snapshot restored by
+	// load(), or -1 if the indexes were not restored from one.
+	public int getRestoredSnapshotHeight() {
+		return this.restoredSnapshotHeight;
+	}
+
+	// Method for saving the indexes to the given file, tagged with the height
+	// and hash ID of the last block.
+	public synchronized void saveIndexSnapshot(File file) throws IOException {
+		this.buildIndexes();
+		String hashID = this.getLastBlock().getHashID();
+		new IndexSnapshot(this.size() - 1, hashID, this.blockTree.get(hashID).getChainWork(),
+				this.utxoSet, this.addressIndex, this.transactionIndex).write(file);
+	}
+
+	// Method for saving the blockchain to the given store, which from then on
+	// follows every change of the chain.
+	public synchronized void persistTo(BlockStore<Block> store) throws IOException {
+		this.blockchain.attach(store);
 	}
 
 	// Method for retrieving the blockchain's genesis block (aka: the first block).
@@ -43,12 +130,145 @@ public class Blockchain implements Serializable {
 		return this.blockchain.findByIndex(index);
 	}
 
+	// Method for retrieving the block with the given hash ID, or null.
+	public synchronized Block findBlock(String hashID) {
+		return this.blockchain.findByHash(hashID);
+	}
+
+	// Method for checking whether the block with the given hash ID is in the chain.
+	public synchronized boolean contains(String hashID) {
+		return this.blockchain.contains(hashID);
+	}
+
+	// Method for retrieving the height of the block with the given hash ID, or -1.
+	public synchronized int heightOf(String hashID) {
+		return this.blockchain.heightOf(hashID);
+	}
+
 	// Method for checking the balance of an input public key/user
-	public double checkBalance(PublicKey key) {
-		ArrayList<UTXO> all = new ArrayList<UTXO>();
-		ArrayList<UTXO> spent = new ArrayList<UTXO>();
-		ArrayList<UTXO> unspent = new ArrayList<UTXO>();
-		return findRelatedUTXOs(key, all, spent, unspent);
+	public synchronized double checkBalance(PublicKey key) {
+		AddressIndex.Entry entry = this.getAddressIndex().get(key);
+		return entry == null ? 0.0 : entry.getBalance();
+	}
+
+	// Method for building the UTXO set, the address index, the transaction
+	// index and the block tree from scratch, unless they already exist.
+	private synchronized void buildIndexes() {
+		if (!this.indexesBuilt()) {
+			this.utxoSet = new UTXOSet();
+			this.addressIndex = new AddressIndex();
+			this.transactionIndex = new TransactionIndex();
+			this.blockTree = new BlockTree();
+			int size = this.size();
+			for (int i=0; i<size; i++)
+				this.applyToIndexes(this.blockTree.add(this.getBlock(i)));
+		}
+	}
+
+	// Method for taking the indexes from the given snapshot and applying the
+	// blocks that came after it. The block tree starts at the block of the
+	// snapshot, so that the blocks below are not read; replayIndexes() extends
+	// it down to the genesis block should one of them be needed.
+	private synchronized void restoreIndexes(IndexSnapshot snapshot) {
+		if (!this.canRestore(snapshot))
+			return;
+		int height = snapshot.getHeight();
+		this.utxoSet = snapshot.getUTXOSet();
+		this.addressIndex = snapshot.getAddressIndex();
+		this.transactionIndex = snapshot.getTransactionIndex();
+		this.blockTree = new BlockTree();
+		this.blockTree.addRoot(this.getBlock(height), height, snapshot.getChainWork());
+		int size = this.size();
+		for (int i=height+1; i<size; i++)
+			this.applyToIndexes(this.blockTree.add(this.getBlock(i)));
+		this.restoredSnapshotHeight = height;
+	}
+
+	// Method for checking whether the indexes can be restored from the given
+	// snapshot: it must have been taken on a block of the chain, and hold the
+	// work of the chain up to it.
+	private boolean canRestore(IndexSnapshot snapshot) {
+		int height = snapshot.getHeight();
+		return snapshot.getChainWork() != null && height >= 0 && height < this.size()
+				&& this.blockchain.hashIDOf(height).equals(snapshot.getHashID());
+	}
+
+	// Method for rebuilding the indexes by replaying the whole chain over the
+	// block tree as it stands, so that the side branches are kept. A tree
+	// restored from a snapshot is first extended down to the genesis block.
+	// Indexes restored from a snapshot need it to list the history of an
+	// address.
+	private void replayIndexes() {
+		for (int i=this.blockTree.getRoot().getHeight()-1; i>=0; i--)
+			this.blockTree.addRootParent(this.getBlock(i));
+		this.utxoSet = new UTXOSet();
+		this.addressIndex = new AddressIndex();
+		this.transactionIndex = new TransactionIndex();
+		int size = this.size();
+		for (int i=0; i<size; i++)
+			this.applyToIndexes(this.blockTree.get(this.getBlock(i).getHashID()));
+	}
+
+	private boolean indexesBuilt() {
+		return this.utxoSet != null && this.addressIndex != null
+				&& this.transactionIndex != null && this.blockTree != null;
+	}
+
+	// Method for updating the indexes with the block of the given node, which
+	// has just become the last block of the chain.
+	private void applyToIndexes(BlockTree.Node node) {
+		Block block = node.getBlock();
+		node.setSpentUTXOs(this.utxoSet.applyBlock(block, node.getHeight()));
+		this.addressIndex.applyBlock(block, node.getHeight(), node.getSpentUTXOs());
+		this.transactionIndex.applyBlock(block, node.getHeight());
+	}
+
+	// Method for undoing applyToIndexes() for the last block of the chain.
+	private void revertFromIndexes(BlockTree.Node node) {
+		Block block = node.getBlock();
+		this.transactionIndex.revertBlock(block, node.getHeight());
+		this.addressIndex.revertBlock(block, node.getHeight(), node.getSpentUTXOs());
+		this.utxoSet.revertBlock(block, node.getSpentUTXOs());
+		node.setSpentUTXOs(null);
+	}
+
+	private synchronized UTXOSet getUTXOSet() {
+		this.buildIndexes();
+		return this.utxoSet;
+	}
+
+	private synchronized AddressIndex getAddressIndex() {
+		this.buildIndexes();
+		return this.addressIndex;
+	}
+
+	// Method for retrieving the address index with the complete history of
+	// every address.
+	private synchronized AddressIndex getAddressHistory() {
+		if (!this.getAddressIndex().hasCompleteHistory())
+			this.replayIndexes();
+		return this.addressIndex;
+	}
+
+	private synchronized TransactionIndex getTransactionIndex() {
+		this.buildIndexes();
+		return this.transactionIndex;
+	}
+
+	private synchronized BlockTree getBlockTree() {
+		this.buildIndexes();
+		return this.blockTree;
+	}
+
+	// Method for checking whether the block with the given hash ID is known,
+	// either on the chain or on a side branch.
+	public synchronized boolean isKnownBlock(String hashID) {
+		return this.contains(hashID) || this.getBlockTree().contains(hashID);
+	}
+
+	// Method for checking whether the UTXO at the given outpoint is yet unspent.
+	public synchronized boolean isUnspent(Outpoint outpoint) {
+		return this.getUTXOSet().contains(outpoint);
 	}
 
 	// Method for finding all UTXOs related to a particular public key.
@@ -60,81 +280,31 @@ public class Blockchain implements Serializable {
 	// unspent is updated to cointain all UTXOs in all that remain unspent,
 	// sentTransactions is updated to contain all Transactions in which the
 	// input keyholder acts as a sending party.
-	public double findRelatedUTXOs(PublicKey key, ArrayList<UTXO> all,
+	// Everything is read from the address index.
+	public synchronized double findRelatedUTXOs(PublicKey key, ArrayList<UTXO> all,
 								   ArrayList<UTXO> spent, ArrayList<UTXO> unspent,
 								   ArrayList<Transaction> sentTransactions, ArrayList<UTXO> rewards) {
-		double gain = 0.0;
-		double spending = 0.0;
-		HashMap<String, UTXO> spentUTXOs = new HashMap<String, UTXO>();
-		int limit = this.size();
-
-		// for each block
-		for (int a=0; a<limit; a++) {
-			Block block = this.blockchain.findByIndex(a);
-			int size = block.getTotalNumberOfTransactions();
-
-			// for each transaction within the block
-			for (int i=0; i<size; i++) {
-				Transaction tx = block.getTransaction(i);
-				int N;
-
-				// if transaction is related to key in the role of sender
-				if (a != 0 && tx.getSender().equals(key)) {
-					// Compute number of input UTXOs
-					N = tx.getNumberOfInputUTXOs();
-
-					// for each input UTXO in the transaction
-					for (int x=0; x<N; x++) {
-						UTXO utxo = tx.getInputUTXO(x);
-						spent.add(utxo);
-						spentUTXOs.put(utxo.getHashID(), utxo);
-						spending += utxo.getFundTransferred();
-					}
-
-					// save sending transaction
-					sentTransactions.add(tx);
-				}
-
-				// Compute number of output UTXOs
-				N = tx.getNumberOfOutputUTXOs();
-
-				// For each output UTXO in the transaction
-				for (int x=0; x<N; x++) {
-					UTXO ux = tx.getOutputUTXO(x);
-					// if key is the recipient in the UTXO
-					if (ux.getReceiver().equals(key)) {
-						all.add(ux);
-						gain += ux.getFundTransferred();
-					}
-				}
-			}
+		AddressIndex.Entry entry = this.getAddressHistory().get(key);
+		if (entry == null)
+			return 0.0;
+		all.addAll(entry.getReceived());
+		spent.addAll(entry.getSpent());
+		unspent.addAll(entry.getUnspent());
+		sentTransactions.addAll(entry.getSentTransactions());
+		rewards.addAll(entry.getRewards());
 
-			// Add reward transactions. TODO: Modify code so that a miner is
-			// allowed to underpay himself like in Bitcoin.
-			if (block.getCreator().equals(key)) {
-				Transaction rt = block.getRewardTransaction();
-				if (rt != null && rt.getNumberOfOutputUTXOs() > 0) {
-					UTXO ux = rt.getOutputUTXO(0);
-					// A miner can only reward himself
-					if (ux.getReceiver().equals(key)) {
-						rewards.add(ux);
-						all.add(ux);
-						gain += ux.getFundTransferred();
-					}
-				}
-			}
-		}
+		// return the balance for the input public key
+		return entry.getBalance();
+	}
 
-		// For each UTXO transferring fund to the user
-		for (int i=0; i<all.size(); i++) {
-			UTXO ut = all.get(i);
-			// if UTXO has not been spent yet
-			if (!spentUTXOs.containsKey(ut.getHashID()))
-				unspent.add(ut);
+	// Method for finding the transactions sent and received by a particular key.
+	public synchronized void findTransactionHistory(PublicKey key, ArrayList<Transaction> sent,
+										   ArrayList<Transaction> received) {
+		AddressIndex.Entry entry = this.getAddressHistory().get(key);
+		if (entry != null) {
+			sent.addAll(entry.getSentTransactions());
+			received.addAll(entry.getReceivedTransactions());
 		}
-
-		// return the balance for the input public key
-		return gain - spending;
 	}
 
 	public double findRelatedUTXOs(PublicKey key, ArrayList<UTXO> all,
@@ -154,33 +324,190 @@ public class Blockchain implements Serializable {
 
 	// Method for finding all unspent UTXOs related to a particular key
 	public ArrayList<UTXO> findUnspentUTXOs(PublicKey key) {
-		ArrayList<UTXO> all = new ArrayList<UTXO>();
-		ArrayList<UTXO> spent = new ArrayList<UTXO>();
 		ArrayList<UTXO> unspent = new ArrayList<UTXO>();
-		findRelatedUTXOs(key, all, spent, unspent);
+		findUnspentUTXOs(key, unspent);
 		return unspent;
 	}
 
 	// Method for finding all unspent UTXOs relating to an input public key.
-	public double findUnspentUTXOs(PublicKey key, ArrayList<UTXO> unspent) {
-		ArrayList<UTXO> all = new ArrayList<UTXO>();
-		ArrayList<UTXO> spent = new ArrayList<UTXO>();
-		return findRelatedUTXOs(key, all, spent, unspent);
+	// These are served from the address index rather than by scanning the chain.
+	public synchronized double findUnspentUTXOs(PublicKey key, ArrayList<UTXO> unspent) {
+		AddressIndex.Entry entry = this.getAddressIndex().get(key);
+		if (entry == null)
+			return 0.0;
+		unspent.addAll(entry.getUnspent());
+		return entry.getBalance();
 	}
 
 	// Method for checking whether a transaction already exists inside a blockchain.
-	protected boolean transactionExists(Transaction tx) {
-		int size = this.blockchain.size();
-		for (int i=size-1; i>0; i--) {
-			Block b = this.blockchain.findByIndex(i);
-			int bs = b.getTotalNumberOfTransactions();
-			for (int j=0; j<bs; j++) {
-				Transaction tx2 = b.getTransaction(j);
-				if (tx.equals(tx2))
-					return true;
+	// As before the index existed, the genesis block and reward transactions
+	// are not taken into account.
+	protected synchronized boolean transactionExists(Transaction tx) {
+		TransactionIndex.Location location = this.getTransactionIndex().get(tx.getHashID());
+		return location != null && location.getHeight() > 0 && !location.isReward();
+	}
+
+	// Method for checking that every input of a transaction refers to an unspent
+	// UTXO of the blockchain paid to the sender's address and holding the amount
+	// the sender signed for, and that the transaction does not spend it twice.
+	public synchronized boolean hasUnspentInputs(Transaction tx) {
+		UTXOSet set = this.getUTXOSet();
+		Address owner = tx.getSenderAddress();
+		HashSet<Outpoint> inputs = new HashSet<Outpoint>();
+		for (int i=0; i<tx.getNumberOfInputs(); i++) {
+			Outpoint outpoint = tx.getInput(i);
+			UTXO utxo = set.get(outpoint);
+			if (utxo == null || !utxo.getReceiver().equals(owner)
+					|| utxo.getFundTransferred() != tx.getInputFund(i) || !inputs.add(outpoint))
+				return false;
+		}
+		return true;
+	}
+
+	// Method for checking the transactions of a block that is about to extend
+	// the chain: they must be properly signed and new to the chain, pay out
+	// what their sender signed for, and spend unspent UTXOs only, none of them
+	// twice within the block. The reward must not exceed the mining reward plus
+	// the transaction fees.
+	public synchronized boolean verifyBlockTransactions(Block block) {
+		int size = block.getTotalNumberOfTransactions();
+		HashSet<Outpoint> spentInBlock = new HashSet<Outpoint>();
+		HashSet<Outpoint> createdInBlock = new HashSet<Outpoint>();
+		for (int i=0; i<size; i++) {
+			Transaction tx = block.getTransaction(i);
+			if (!tx.verifySignature() || this.transactionExists(tx) || !this.hasUnspentInputs(tx)) {
+				System.out.println("\tWarning: Block(" + block.getHashID()
+						+ ") transaction " + i + " is invalid either because "
+						+ "its signature has been tampered, it already "
+						+ "exists in the blockchain, or it spends funds "
+						+ "that are not available to its sender.");
+				return false;
+			}
+			if (!tx.verifyOutputs()) {
+				System.out.println("\tWarning: Block(" + block.getHashID()
+						+ ") transaction " + i + " has outputs its sender did not sign for.");
+				return false;
+			}
+			// No two transactions of the block may spend the same UTXO
+			for (int x=0; x<tx.getNumberOfInputs(); x++) {
+				if (!spentInBlock.add(tx.getInput(x))) {
+					System.out.println("\tWarning: Block(" + block.getHashID()
+							+ ") transaction " + i + " double-spends a UTXO.");
+					return false;
+				}
 			}
+			if (!this.createsNewOutputs(tx, createdInBlock)) {
+				System.out.println("\tWarning: Block(" + block.getHashID()
+						+ ") transaction " + i + " has a forged hash ID or reuses outpoints.");
+				return false;
+			}
+		}
+		Transaction tr = block.getRewardTransaction();
+		if (tr != null && (tr.getTotalFundToTransfer() > MINING_REWARD + block.getTransactionFeeAmount()
+				|| tr.getNumberOfOutputUTXOs() != 1
+				|| tr.getOutputUTXO(0).getFundTransferred() != tr.getTotalFundToTransfer())) {
+			System.out.printf("\tWarning: Block(%s) overrewarded%n", block.getHashID());
+			return false;
+		}
+		if (tr != null && !this.createsNewOutputs(tr, createdInBlock)) {
+			System.out.printf("\tWarning: Block(%s) has a forged reward transaction%n", block.getHashID());
+			return false;
+		}
+		return true;
+	}
+
+	// Method for checking that a transaction's outputs do not overwrite any
+	// UTXO: its hash ID must match its data and be new to the chain, reward
+	// and genesis transactions included, and none of its outpoints may be in
+	// the UTXO set or created by an earlier transaction of the same block.
+	private boolean createsNewOutputs(Transaction tx, HashSet<Outpoint> createdInBlock) {
+		if (!tx.verifyOutpoints() || this.getTransactionIndex().get(tx.getHashID()) != null)
+			return false;
+		UTXOSet set = this.getUTXOSet();
+		for (int x=0; x<tx.getNumberOfOutputUTXOs(); x++) {
+			Outpoint outpoint = tx.getOutputUTXO(x).getOutpoint();
+			if (set.contains(outpoint) || !createdInBlock.add(outpoint))
+				return false;
+		}
+		return true;
+	}
+
+	// Method for finding where the transaction with the given hash ID is on the
+	// chain. Returns null if it is not.
+	public synchronized TransactionIndex.Location findTransaction(String transactionHashID) {
+		return this.getTransactionIndex().get(transactionHashID);
+	}
+
+	// Method for computing the difficulty level required of the block at the given
+	// height, based solely on the blocks below it (see DifficultyRules).
+	public int getRequiredDifficultyLevel(int height) {
+		return DifficultyRules.requiredDifficultyLevel(height, this::getBlock);
+	}
+
+	// Method for computing the difficulty level required of the next block.
+	public int getNextDifficultyLevel() {
+		return this.getRequiredDifficultyLevel(this.size());
+	}
+
+	// Method for computing the compact target required of the block at the given
+	// height (see DifficultyRules).
+	public int getRequiredTargetBits(int height) {
+		return DifficultyRules.requiredTargetBits(height, this::getBlock);
+	}
+
+	// Method for computing the compact target required of the next block.
+	public int getNextTargetBits() {
+		return this.getRequiredTargetBits(this.size());
+	}
+
+	// Method for checking that a block placed at the given height carries the
+	// difficulty dictated by the blocks below it.
+	public boolean hasRequiredDifficulty(Block block, int height) {
+		return DifficultyRules.hasRequiredDifficulty(block, height, this::getBlock);
+	}
+
+	// Method for checking the difficulty of a block built on any known block. For
+	// a block on a side branch, the rules look at the blocks of its own branch.
+	public synchronized boolean hasRequiredDifficulty(Block block) {
+		int height = this.heightOfChild(block);
+		return height >= 0 && DifficultyRules.hasRequiredDifficulty(block, height, this.branchOf(block));
+	}
+
+	// Method for checking that a block placed at the given height has a
+	// timestamp the blocks below it allow (see DifficultyRules).
+	public boolean hasValidTimeStamp(Block block, int height) {
+		return DifficultyRules.hasValidTimeStamp(block, height, this::getBlock);
+	}
+
+	// Method for checking the timestamp of a block built on any known block,
+	// against the blocks of its own branch.
+	public synchronized boolean hasValidTimeStamp(Block block) {
+		int height = this.heightOfChild(block);
+		return height >= 0 && DifficultyRules.hasValidTimeStamp(block, height, this.branchOf(block));
+	}
+
+	// Method for finding the height a block built on any known block takes, or
+	// -1 if its parent is unknown.
+	private int heightOfChild(Block block) {
+		int height = this.heightOf(block.getPreviousBlockHashID());
+		if (height < 0) {
+			BlockTree.Node parent = this.getBlockTree().get(block.getPreviousBlockHashID());
+			height = parent == null ? -1 : parent.getHeight();
 		}
-		return false;
+		return height < 0 ? -1 : height + 1;
+	}
+
+	// Method for looking up, by height, the blocks below a block built on any
+	// known block, along its own branch. Below the fork, and below the root of
+	// a tree restored from a snapshot, the branch is the chain.
+	private IntFunction<Block> branchOf(Block block) {
+		if (this.contains(block.getPreviousBlockHashID()))
+			return this::getBlock;
+		BlockTree.Node parent = this.getBlockTree().get(block.getPreviousBlockHashID());
+		return height -> {
+			BlockTree.Node node = parent.ancestor(height);
+			return node != null ? node.getBlock() : this.getBlock(height);
+		};
 	}
 
 	// Method for retrieving the genesis miner of the blockchain.
@@ -189,62 +516,174 @@ public class Blockchain implements Serializable {
 	}
 
 	public static boolean validateBlockchain(Blockchain ledger) {
+		return validateBlockchain(ledger, 0) == ledger.size();
+	}
+
+	// Method for validating the blocks of a blockchain from the given height
+	// on, in chain order, the blocks below it being trusted. Returns the height
+	// of the first block that does not validate, or the size of the chain if
+	// they all do.
+	public static int validateBlockchain(Blockchain ledger, int from) {
+		if (from <= 0) {
+			Block genesisBlock = ledger.getGenesisBlock();
+			// Confirm that the genesis block has been signed
+			boolean b2 = genesisBlock.verifySignature(genesisBlock.getCreator());
+			if (!b2) {
+				System.out.println("validateBlockchain(): Genesis block is tampered!");
+				return 0;
+			}
+
+			b2 = genesisBlock.verifyProofOfWork();
+			if (!b2) {
+				System.out.println("validateBlockchain(): Genesis block has a bad hash!");
+				return 0;
+			}
+			// The genesis block must be mined at the configured initial difficulty
+			b2 = ledger.hasRequiredDifficulty(genesisBlock, 0);
+			if (!b2) {
+				System.out.println("validateBlockchain(): Genesis block has an unexpected difficulty level!");
+				return 0;
+			}
+			b2 = ledger.hasValidTimeStamp(genesisBlock, 0);
+			if (!b2) {
+				System.out.println("validateBlockchain(): Genesis block has an invalid timestamp!");
+				return 0;
+			}
+		}
 		int size = ledger.size();
-		for (int i = size-1; i > 0; i--) {
+		for (int i = Math.max(from, 1); i < size; i++) {
 			Block currentBlock = ledger.getBlock(i);
 			boolean b = currentBlock.verifySignature(currentBlock.getCreator());
 			if (!b) {
 				System.out.println("validateBlockchain(): Block " + (i + 1) + " has an invalid signature!");
-				return false;
+				return i;
 			}
-			b = UtilityMethods.hashMeetsDifficultyLevel(currentBlock.getHashID(),
-					currentBlock.getDifficultyLevel()) &&
-					currentBlock.computeHashID().equals(currentBlock.getHashID());
+			b = currentBlock.verifyProofOfWork();
 			if (!b) {
 				System.out.println("validateBlockchain(): Block " + (i + 1) + " has a bad hash!");
-				return false;
+				return i;
+			}
+			b = ledger.hasRequiredDifficulty(currentBlock, i);
+			if (!b) {
+				System.out.println("validateBlockchain(): Block " + (i + 1) + " has an unexpected difficulty level!");
+				return i;
+			}
+			b = ledger.hasValidTimeStamp(currentBlock, i);
+			if (!b) {
+				System.out.println("validateBlockchain(): Block " + (i + 1) + " has an invalid timestamp!");
+				return i;
 			}
 			Block previousBlock = ledger.getBlock(i-1);
 			b = currentBlock.getPreviousBlockHashID().equals(previousBlock.getHashID());
 			if (!b)
 			{
 				System.out.println("validateBlockchain(): Block " + (i + 1) + " has an invalid previous block hash ID!");
-				return false;
+				return i;
 			}
 		}
-		Block genesisBlock = ledger.getGenesisBlock();
-		// Confirm that the genesis block has been signed
-		boolean b2 = genesisBlock.verifySignature(genesisBlock.getCreator());
-		if (!b2) {
-			System.out.println("validateBlockchain(): Genesis block is tampered!");
-			return false;
-		}
-
-		b2 = UtilityMethods.hashMeetsDifficultyLevel(genesisBlock.getHashID(),
-				genesisBlock.getDifficultyLevel()) &&
-				genesisBlock.computeHashID().equals(genesisBlock.getHashID());
-		if (!b2) {
-			System.out.println("validateBlockchain(): Genesis block has a bad hash!");
-			return false;
-		}
-		return true;
+		return size;
 	}
 
-	// Method for adding a new valid block to the blockchain.
+	// Method for adding a new valid block to the blockchain. A block that does not
+	// extend the last block is kept on a side branch, and the chain switches to
+	// that branch as soon as it carries more work than the chain itself.
 	public synchronized boolean addBlock(Block block) {
-		if (this.size() == 0) {
+		if (this.size() == 0 || block.getPreviousBlockHashID().equals(this.getLastBlock().getHashID())) {
 			this.blockchain.add(block);
+			if (this.indexesBuilt())
+				this.applyToIndexes(this.blockTree.add(block));
 			return true;
-		} else if (block.getPreviousBlockHashID().equals(this.getLastBlock().getHashID())) {
-			this.blockchain.add(block);
-			return true;
-		} else
+		}
+		BlockTree tree = this.getBlockTree();
+		BlockTree.Node parent = tree.get(block.getPreviousBlockHashID());
+		// A branch forking below the snapshot the tree was restored from
+		if (parent == null && this.contains(block.getPreviousBlockHashID())) {
+			this.replayIndexes();
+			parent = tree.get(block.getPreviousBlockHashID());
+		}
+		if (parent == null || parent.isInvalid() || tree.contains(block.getHashID()))
 			return false;
+		BlockTree.Node node = tree.add(block);
+		BlockTree.Node tip = tree.get(this.getLastBlock().getHashID());
+		if (node.getChainWork().compareTo(tip.getChainWork()) > 0)
+			return this.reorganize(tip, node);
+		return true;
+	}
+
+	// Method for switching the chain from the branch ending at oldTip to the one
+	// ending at newTip. Only the blocks above the fork point are touched: those
+	// of the old branch are disconnected, last first, reverting their effect on
+	// the indexes, then those of the new branch are checked and connected. If one
+	// of them is invalid, it is marked as such and the old branch is restored.
+	// Blocks from before the snapshot the indexes were restored from cannot be
+	// reverted until the chain has been replayed.
+	private boolean reorganize(BlockTree.Node oldTip, BlockTree.Node newTip) {
+		BlockTree.Node fork = BlockTree.findFork(oldTip, newTip);
+		ArrayList<BlockTree.Node> oldBranch = BlockTree.path(fork, oldTip);
+		if (!oldBranch.isEmpty() && oldBranch.get(0).getSpentUTXOs() == null)
+			this.replayIndexes();
+		this.disconnectDownTo(fork);
+		ArrayList<BlockTree.Node> branch = BlockTree.path(fork, newTip);
+		for (int i=0; i<branch.size(); i++) {
+			BlockTree.Node node = branch.get(i);
+			if (!this.verifyBlockTransactions(node.getBlock())) {
+				for (int j=i; j<branch.size(); j++)
+					branch.get(j).markInvalid();
+				this.disconnectDownTo(fork);
+				for (int j=0; j<oldBranch.size(); j++)
+					this.connect(oldBranch.get(j));
+				return false;
+			}
+			this.connect(node);
+		}
+		if (this.disconnectedTransactions == null)
+			this.disconnectedTransactions = new ArrayList<Transaction>();
+		for (int i=0; i<oldBranch.size(); i++) {
+			Block block = oldBranch.get(i).getBlock();
+			for (int j=0; j<block.getTotalNumberOfTransactions(); j++) {
+				Transaction tx = block.getTransaction(j);
+				if (this.transactionIndex.get(tx.getHashID()) == null)
+					this.disconnectedTransactions.add(tx);
+			}
+		}
+		return true;
+	}
+
+	// Method for taking the transactions that reorganizations have removed
+	// from the chain since the last call, in chain order.
+	public synchronized ArrayList<Transaction> takeDisconnectedTransactions() {
+		ArrayList<Transaction> transactions = this.disconnectedTransactions;
+		this.disconnectedTransactions = null;
+		return transactions == null ? new ArrayList<Transaction>() : transactions;
+	}
+
+	private void connect(BlockTree.Node node) {
+		this.blockchain.add(node.getBlock());
+		this.applyToIndexes(node);
+	}
+
+	// Method for disconnecting the last blocks of the chain until the block of
+	// the given node is the last one.
+	private void disconnectDownTo(BlockTree.Node node) {
+		while (this.size() - 1 > node.getHeight()) {
+			Block block = this.blockchain.removeLast();
+			this.revertFromIndexes(this.blockTree.get(block.getHashID()));
+		}
+	}
+
+	// Method for extracting the chain of block headers that a light wallet keeps
+	// in place of the full blockchain.
+	public synchronized HeaderChain getHeaderChain() {
+		HeaderChain headers = new HeaderChain(this.getGenesisBlock().getHeader());
+		for (int i=1; i<this.size(); i++)
+			headers.addHeader(this.getBlock(i).getHeader());
+		return headers;
 	}
 
 	// Method for creating a "shallow copy" of the blockchain.
-	// Blocks and their order are preserved.
+	// Blocks and their order are preserved. The copy shares the blocks with
+	// this blockchain and takes constant time, whatever the chain's length.
 	public synchronized Blockchain copy_NotDeepCopy() {
-		return new Blockchain(this.blockchain);
+		return new Blockchain(this.blockchain.snapshot());
 	}
 }
\ No newline at end of file
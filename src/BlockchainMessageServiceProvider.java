@@ -15,22 +15,22 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class BlockchainMessageServiceProvider {
     private ServerSocket serverSocket = null;
     private boolean forever = true;
-    // Hashtable for storing all network connections based on wallet public keys.
-    Hashtable<String, ConnectionChannelTaskManager> connections = null;
+    // Hashtable for storing all network connections based on wallet addresses.
+    Hashtable<Address, ConnectionChannelTaskManager> connections = null;
     // All incoming messages are stored in this queue for processing.
     private ConcurrentLinkedQueue<Message> messageQueue = null;
     // To store all names/addresses so that name discovery service can
     // be provided.
-    private Hashtable<String, KeyNamePair> allAddresses = null;
+    private Hashtable<Address, KeyNamePair> allAddresses = null;
     // Genesis blockchain is a public asset in this system.
     private static Blockchain genesisBlockchain = null;
 
     // Constructor
     public BlockchainMessageServiceProvider() {
         System.out.println("BlockchainMessageServiceProvider starting up...");
-        connections = new Hashtable<String, ConnectionChannelTaskManager>();
+        connections = new Hashtable<Address, ConnectionChannelTaskManager>();
         this.messageQueue = new ConcurrentLinkedQueue<Message>();
-        this.allAddresses = new Hashtable<String, KeyNamePair>();
+        this.allAddresses = new Hashtable<Address, KeyNamePair>();
         try {
             serverSocket = new ServerSocket(Configuration.networkPort());
         }
@@ -74,8 +74,8 @@ public class BlockchainMessageServiceProvider {
         }
     }
 
-    // Method for discovering the corresponding public key based on a hashID.
-    protected PublicKey findAddress(String id) {
+    // Method for discovering the corresponding public key based on an address.
+    protected PublicKey findAddress(Address id) {
         KeyNamePair knp = this.allAddresses.get(id);
         if (knp != null)
             return knp.getKey();
@@ -84,7 +84,7 @@ public class BlockchainMessageServiceProvider {
     }
 
     // When a connection is closed, remove this connection from storage.
-    protected synchronized KeyNamePair removeAddress(String id) {
+    protected synchronized KeyNamePair removeAddress(Address id) {
         return this.allAddresses.remove(id);
     }
 
@@ -99,10 +99,15 @@ public class BlockchainMessageServiceProvider {
 
     // Method for finding a connection channel task manager based on a connectionID.
     protected synchronized ConnectionChannelTaskManager
-                    findConnectionChannelTaskManager(String connectionID) {
+                    findConnectionChannelTaskManager(Address connectionID) {
         return this.connections.get(connectionID);
     }
 
+    // Method for finding the connection channel task manager of a wallet.
+    protected ConnectionChannelTaskManager findConnectionChannelTaskManager(PublicKey key) {
+        return this.findConnectionChannelTaskManager(Address.of(key));
+    }
+
     // Method for retrieving all connection channel task managers.
     protected synchronized ArrayList<ConnectionChannelTaskManager>
                     getAllConnectionChannelTaskManager() {
@@ -117,7 +122,7 @@ public class BlockchainMessageServiceProvider {
 
     // Add one address into the address collection.
     protected synchronized void addPublicKeyAddress(KeyNamePair knp) {
-        this.allAddresses.put(UtilityMethods.getKeyString(knp.getKey()), knp);
+        this.allAddresses.put(Address.of(knp.getKey()), knp);
     }
 
     // Add one connection channel task manager.
@@ -126,7 +131,7 @@ public class BlockchainMessageServiceProvider {
     }
 
     // Remove a connection channel task manager and the related address.
-    protected synchronized KeyNamePair removeConnectionChannel(String channelID) {
+    protected synchronized KeyNamePair removeConnectionChannel(Address channelID) {
         this.connections.remove(channelID);
         KeyNamePair knp = this.removeAddress(channelID);
         return knp;
@@ -156,7 +161,7 @@ class ConnectionChannelTaskManager implements Runnable {
     boolean forever = true;
 
     // The connection clientID indicates which connection this thread is working for.
-    private String ConnectionID = null;
+    private Address ConnectionID = null;
     private BlockchainMessageServiceProvider server;
 
     // The private and public key pair of the server.
@@ -189,7 +194,7 @@ class ConnectionChannelTaskManager implements Runnable {
                 throw new Exception("messageID is invalid. Something went wrong...");
             // Store this connection and its ID
             this.delegatePublicKey = mid.getPublicKey();
-            this.ConnectionID = UtilityMethods.getKeyString(mid.getPublicKey());
+            this.ConnectionID = Address.of(mid.getPublicKey());
             this.name = mid.getName();
             System.out.println("Connection successfully established for "
                 + this.getDelegateName() + "|" + this.ConnectionID);
@@ -251,8 +256,8 @@ class ConnectionChannelTaskManager implements Runnable {
         }
     }
 
-    // Method for returning the readable string of the client's public key.
-    protected String getConnectionChannelID() {
+    // Method for returning the address of the client's public key.
+    protected Address getConnectionChannelID() {
         return this.ConnectionID;
     }
 
@@ -369,7 +374,7 @@ class MessageCheckingTaskManager implements Runnable {
                     System.out.printf("%s left the system.%n", mtp.getSenderName());
                     ConnectionChannelTaskManager thread =
                             this.server.findConnectionChannelTaskManager(
-                                    UtilityMethods.getKeyString(mtp.getSenderKey()));
+                                    mtp.getSenderKey());
                     if (thread != null)
                         thread.passiveClose();
                 }
@@ -392,7 +397,7 @@ class MessageCheckingTaskManager implements Runnable {
                     }
                     ConnectionChannelTaskManager thread =
                             this.server.findConnectionChannelTaskManager(
-                                    UtilityMethods.getKeyString(mtp.getSenderKey()));
+                                    mtp.getSenderKey());
                     if (thread != null) {
                         MessageAddressPrivate map = new MessageAddressPrivate(addresses);
                         thread.sendMessage(map);
@@ -407,7 +412,7 @@ class MessageCheckingTaskManager implements Runnable {
                 // It must be a message for a wallet. Forward the message.
                 ConnectionChannelTaskManager thread =
                         this.server.findConnectionChannelTaskManager(
-                                UtilityMethods.getKeyString(mtp.getReceiver()));
+                                mtp.getReceiver());
                 // If thread is null, user must have logged out
                 if (thread != null)
                     thread.sendMessage(mtp);
@@ -419,7 +424,7 @@ class MessageCheckingTaskManager implements Runnable {
             MessageBlockchainPrivate mbcp = (MessageBlockchainPrivate) msg;
             ConnectionChannelTaskManager thread =
                     this.server.findConnectionChannelTaskManager(
-                            UtilityMethods.getKeyString(mbcp.getReceiver()));
+                            mbcp.getReceiver());
             if (thread != null)
                 thread.sendMessage(mbcp);
         }
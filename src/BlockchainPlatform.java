@@ -62,14 +62,21 @@ final class MinerGenesisSimulator implements Runnable {
                 + "and genesis block...");
             // Create a genesis miner to start a blockchain
             genesisMiner = this.getGenesisMiner();
+            // After a restart, the genesis miner carries on with the blockchain
+            // it kept on disk
+            if (genesisMiner.getLocalLedger() != null) {
+                System.out.println("Genesis miner reloaded its blockchain, size = "
+                    + genesisMiner.getLocalLedger().size());
+                this.genesisLedger = genesisMiner.getLocalLedger().copy_NotDeepCopy();
+                return this.genesisLedger;
+            }
             // Create a genesis block
             Block genesisBlock =
                     new Block("0", Configuration.blockMiningDifficultyLevel(),
                             genesisMiner.getPublicKey());
-            UTXO u1 = new UTXO("0", genesisMiner.getPublicKey(),
-                    genesisMiner.getPublicKey(), 1_000_001.0);
-            UTXO u2 = new UTXO("0", genesisMiner.getPublicKey(),
-                    genesisMiner.getPublicKey(), 1_000_000.0);
+            Address genesisAddress = genesisMiner.getAddress();
+            UTXO u1 = new UTXO("0", 0, genesisAddress, genesisAddress, 1_000_001.0);
+            UTXO u2 = new UTXO("0", 1, genesisAddress, genesisAddress, 1_000_000.0);
             ArrayList<UTXO> inputs = new ArrayList<UTXO>();
             inputs.add(u1);
             inputs.add(u2);
@@ -121,6 +128,8 @@ final class MinerGenesisSimulator implements Runnable {
             + "start before any other miners or wallet!");
         Miner miner = getGenesisMiner();
         this.getGenesisLedger();
+        // However the platform stops, the genesis miner's blockchain is synced to disk
+        Runtime.getRuntime().addShutdownHook(new Thread(miner::closeBlockStore));
         System.out.printf("You name = %s%n", miner.getName());
         System.out.println("===== Important! Has the ServiceRelayProvider " +
                 "started? ===== (1 = yes, 0 = no)");
@@ -0,0 +1,20 @@
+import java.math.BigInteger;
+
+// Interface ChainLink gathers what the chain rules need to know about an entry
+// of the ledger: how it links to its predecessor, when it was created and how
+// much work it had to carry. It is implemented both by full blocks and by the
+// block headers kept by light wallets.
+public interface ChainLink {
+    String getHashID();
+
+    String getPreviousBlockHashID();
+
+    long getTimeStamp();
+
+    int getDifficultyLevel();
+
+    // compact 256-bit target; 0 for entries under the leading-zero rule
+    int getTargetBits();
+
+    BigInteger getTarget();
+}
@@ -30,6 +30,105 @@ public class Configuration {
         return Configuration.BLOCK_MINING_DIFFICULTY_LEVEL;
     }
 
+    // Targeted time between two consecutive blocks, in milliseconds.
+    private static final long TARGET_BLOCK_INTERVAL = 10_000;
+    public static final long targetBlockInterval() {
+        return Configuration.TARGET_BLOCK_INTERVAL;
+    }
+
+    // Number of blocks after which the difficulty level is retargeted, based
+    // on the timestamps of the last that many blocks.
+    private static final int DIFFICULTY_RETARGET_WINDOW = 10;
+    public static final int difficultyRetargetWindow() {
+        return Configuration.DIFFICULTY_RETARGET_WINDOW;
+    }
+
+    // Time by which the timestamp of a block may be ahead of the local clock,
+    // in milliseconds.
+    private static final long MAX_FUTURE_BLOCK_TIME = 30_000;
+    public static final long maxFutureBlockTime() {
+        return Configuration.MAX_FUTURE_BLOCK_TIME;
+    }
+
+    // Bounds within which the retargeted difficulty level is kept.
+    private static final int MIN_DIFFICULTY_LEVEL = 8;
+    public static final int minDifficultyLevel() {
+        return Configuration.MIN_DIFFICULTY_LEVEL;
+    }
+
+    private static final int MAX_DIFFICULTY_LEVEL = 64;
+    public static final int maxDifficultyLevel() {
+        return Configuration.MAX_DIFFICULTY_LEVEL;
+    }
+
+    // Number of threads a miner uses to search the nonce space in parallel.
+    private static final int MINING_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int miningThreads() {
+        return Configuration.MINING_THREADS;
+    }
+
+    // Number of nonces tried for one header prefix before the extra nonce is rolled.
+    private static final long NONCE_SEARCH_RANGE = 1L << 32;
+    public static final long nonceSearchRange() {
+        return Configuration.NONCE_SEARCH_RANGE;
+    }
+
+    // Time after which a wallet may again spend the UTXOs used by one of its
+    // transactions that has not made it into the blockchain, in milliseconds.
+    private static final long PENDING_TRANSACTION_TIMEOUT = 120_000;
+    public static final long pendingTransactionTimeout() {
+        return Configuration.PENDING_TRANSACTION_TIMEOUT;
+    }
+
+    // Maximum number of blocks waiting for their parent, in all and per
+    // creator, and the time after which such a block is dropped, in
+    // milliseconds.
+    private static final int ORPHAN_POOL_SIZE = 100;
+    public static final int orphanPoolSize() {
+        return Configuration.ORPHAN_POOL_SIZE;
+    }
+
+    private static final int ORPHAN_BLOCKS_PER_CREATOR = 10;
+    public static final int orphanBlocksPerCreator() {
+        return Configuration.ORPHAN_BLOCKS_PER_CREATOR;
+    }
+
+    private static final long ORPHAN_BLOCK_TIMEOUT = 600_000;
+    public static final long orphanBlockTimeout() {
+        return Configuration.ORPHAN_BLOCK_TIMEOUT;
+    }
+
+    // Directory under which every wallet keeps its local blockchain on disk.
+    private static String BLOCK_STORE_LOCATION = "blocks";
+    public static final String blockStoreLocation() {
+        return Configuration.BLOCK_STORE_LOCATION;
+    }
+
+    // Size in bytes after which a block store starts a new segment file, and
+    // number of writes after which it syncs to disk.
+    private static final long BLOCK_STORE_SEGMENT_SIZE = 64L << 20;
+    public static final long blockStoreSegmentSize() {
+        return Configuration.BLOCK_STORE_SEGMENT_SIZE;
+    }
+
+    private static final int BLOCK_STORE_SYNC_INTERVAL = 16;
+    public static final int blockStoreSyncInterval() {
+        return Configuration.BLOCK_STORE_SYNC_INTERVAL;
+    }
+
+    // Number of blocks after which a wallet saves a new snapshot of the
+    // indexes of its local blockchain, and name of the snapshot file in its
+    // block store.
+    private static final int INDEX_SNAPSHOT_INTERVAL = 100;
+    public static final int indexSnapshotInterval() {
+        return Configuration.INDEX_SNAPSHOT_INTERVAL;
+    }
+
+    private static final String INDEX_SNAPSHOT_FILE = "index-snapshot.dat";
+    public static final String indexSnapshotFile() {
+        return Configuration.INDEX_SNAPSHOT_FILE;
+    }
+
     // Number of sign-in bonus blocks that the genesis miner will mine.
     // Additional sign-in bonus transactions are collected by other miners.
     public static final int SELF_BLOCKS_TO_MINE_LIMIT = 2;
@@ -0,0 +1,99 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+// Class DifficultyRules holds the difficulty adjustment rules shared by the full
+// blockchain and by the header chains of light wallets, along with the rule on
+// timestamps that retargeting relies on. The chain is passed in as a function
+// from height to entry; only entries below the height in question are ever
+// looked up.
+public final class DifficultyRules {
+
+    private DifficultyRules() {}
+
+    // Method for computing the difficulty level required of the entry at the given
+    // height, based solely on the entries below it. Every retarget window, the level
+    // goes up (down) by one, i.e., the work doubles (halves), if the entries of the
+    // last window arrived more than twice as fast (slow) as targeted.
+    public static int requiredDifficultyLevel(int height, IntFunction<? extends ChainLink> chain) {
+        if (height == 0)
+            return Configuration.blockMiningDifficultyLevel();
+        ChainLink previous = chain.apply(height - 1);
+        int level = previous.getDifficultyLevel();
+        int window = Configuration.difficultyRetargetWindow();
+        if (height < window || height % window != 0)
+            return level;
+
+        long actual = previous.getTimeStamp() - chain.apply(height - window).getTimeStamp();
+        long expected = (window - 1) * Configuration.targetBlockInterval();
+        if (actual < expected / 2)
+            level++;
+        else if (actual > expected * 2)
+            level--;
+        return Math.max(Configuration.minDifficultyLevel(),
+                Math.min(Configuration.maxDifficultyLevel(), level));
+    }
+
+    // Method for computing the compact target required of the entry at the given
+    // height. Every retarget window, the previous target is scaled by the ratio of
+    // the observed to the targeted time the window took, limited to a factor of
+    // four either way. Entries without a target count with the target that
+    // requires the same work as their difficulty level.
+    public static int requiredTargetBits(int height, IntFunction<? extends ChainLink> chain) {
+        if (height == 0)
+            return UtilityMethods.encodeCompactTarget(UtilityMethods.difficultyLevelToTarget(
+                    Configuration.blockMiningDifficultyLevel()));
+        ChainLink previous = chain.apply(height - 1);
+        BigInteger target = previous.getTarget();
+        int window = Configuration.difficultyRetargetWindow();
+        if (height >= window && height % window == 0) {
+            long actual = previous.getTimeStamp() - chain.apply(height - window).getTimeStamp();
+            long expected = (window - 1) * Configuration.targetBlockInterval();
+            actual = Math.max(expected / 4, Math.min(expected * 4, actual));
+            target = target.multiply(BigInteger.valueOf(actual))
+                    .divide(BigInteger.valueOf(expected));
+        }
+        BigInteger easiest = UtilityMethods.difficultyLevelToTarget(Configuration.minDifficultyLevel());
+        BigInteger hardest = UtilityMethods.difficultyLevelToTarget(Configuration.maxDifficultyLevel());
+        target = target.min(easiest).max(hardest);
+        return UtilityMethods.encodeCompactTarget(target);
+    }
+
+    // Method for checking the timestamp of an entry placed at the given height,
+    // which the miner sets freely: it must be later than the median timestamp
+    // of the last retarget window of entries below it, and no further ahead of
+    // the local clock than the configured tolerance. Otherwise a miner could
+    // back- or future-date entries to push the next target either way.
+    public static boolean hasValidTimeStamp(ChainLink link, int height,
+                                            IntFunction<? extends ChainLink> chain) {
+        if (link.getTimeStamp() > UtilityMethods.getTimeStamp() + Configuration.maxFutureBlockTime())
+            return false;
+        return height == 0 || link.getTimeStamp() > medianTimeStamp(height, chain);
+    }
+
+    // Method for computing the median timestamp of the last retarget window of
+    // entries below the given height, or of all of them if there are fewer.
+    public static long medianTimeStamp(int height, IntFunction<? extends ChainLink> chain) {
+        int n = Math.min(height, Configuration.difficultyRetargetWindow());
+        long[] times = new long[n];
+        for (int i=0; i<n; i++)
+            times[i] = chain.apply(height - 1 - i).getTimeStamp();
+        Arrays.sort(times);
+        return times[(n - 1) / 2];
+    }
+
+    // Method for checking that an entry placed at the given height carries the
+    // difficulty dictated by the entries below it. Entries without a target, such
+    // as genesis blocks created with a difficulty level, are checked under the
+    // leading-zero rule, as long as no entry with a target precedes them. This
+    // does not keep chains stored in an earlier format valid; their hashes and
+    // transactions no longer verify.
+    public static boolean hasRequiredDifficulty(ChainLink link, int height,
+                                                IntFunction<? extends ChainLink> chain) {
+        if (link.getTargetBits() != 0)
+            return link.getTargetBits() == requiredTargetBits(height, chain);
+        if (height > 0 && chain.apply(height - 1).getTargetBits() != 0)
+            return false;
+        return link.getDifficultyLevel() == requiredDifficultyLevel(height, chain);
+    }
+}
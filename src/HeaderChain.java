@@ -0,0 +1,104 @@
+import java.io.Serializable;
+
+// Class HeaderChain is the headers-only counterpart of Blockchain. It keeps a
+// few hundred bytes per block instead of the transactions, which is all a light
+// wallet needs to check that a transaction was mined, given a Merkle proof
+// obtained from a full node.
+public class HeaderChain implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private LedgerList<BlockHeader> headers;
+
+    // Constructor
+    public HeaderChain(BlockHeader genesisHeader) {
+        this.headers = new LedgerList<BlockHeader>();
+        this.headers.add(genesisHeader);
+    }
+
+    public BlockHeader getGenesisHeader() {
+        return this.headers.getFirst();
+    }
+
+    public BlockHeader getLastHeader() {
+        return this.headers.getLast();
+    }
+
+    public BlockHeader getHeader(int index) {
+        return this.headers.findByIndex(index);
+    }
+
+    public int size() {
+        return this.headers.size();
+    }
+
+    // Method for appending a header to the chain. Unlike full blocks, which are
+    // checked by the wallets before being added, a header is only accepted here
+    // if it extends the last header and carries valid work and a valid signature.
+    public synchronized boolean addHeader(BlockHeader header) {
+        if (!header.getPreviousBlockHashID().equals(this.getLastHeader().getHashID()))
+            return false;
+        if (!header.verifyProofOfWork() || !header.verifySignature(header.getCreator()))
+            return false;
+        if (!DifficultyRules.hasRequiredDifficulty(header, this.size(), this::getHeader)
+                || !DifficultyRules.hasValidTimeStamp(header, this.size(), this::getHeader))
+            return false;
+        return this.headers.add(header);
+    }
+
+    // Method for finding the height of the block with the given hash ID.
+    // Returns -1 if the block is not in the chain.
+    public synchronized int findHeight(String blockHashID) {
+        return this.headers.heightOf(blockHashID);
+    }
+
+    // Method for retrieving the number of blocks that confirm the block with the
+    // given hash ID, the block itself included. Returns 0 if it is not in the chain.
+    public int getConfirmations(String blockHashID) {
+        int height = this.findHeight(blockHashID);
+        return height < 0 ? 0 : this.size() - height;
+    }
+
+    // Method for verifying that a transaction is inside the block with the given
+    // hash ID, which must be part of this chain.
+    public boolean verifyTransaction(MerkleProof proof, String blockHashID) {
+        int height = this.findHeight(blockHashID);
+        if (height < 0)
+            return false;
+        return UtilityMethods.verifyMerkleProof(proof, this.getHeader(height));
+    }
+
+    public static boolean validateHeaderChain(HeaderChain chain) {
+        for (int i=chain.size()-1; i>0; i--) {
+            BlockHeader current = chain.getHeader(i);
+            if (!current.verifySignature(current.getCreator())) {
+                System.out.println("validateHeaderChain(): Header " + (i + 1) + " has an invalid signature!");
+                return false;
+            }
+            if (!current.verifyProofOfWork()) {
+                System.out.println("validateHeaderChain(): Header " + (i + 1) + " has a bad hash!");
+                return false;
+            }
+            if (!DifficultyRules.hasRequiredDifficulty(current, i, chain::getHeader)) {
+                System.out.println("validateHeaderChain(): Header " + (i + 1) + " has an unexpected difficulty level!");
+                return false;
+            }
+            if (!DifficultyRules.hasValidTimeStamp(current, i, chain::getHeader)) {
+                System.out.println("validateHeaderChain(): Header " + (i + 1) + " has an invalid timestamp!");
+                return false;
+            }
+            if (!current.getPreviousBlockHashID().equals(chain.getHeader(i - 1).getHashID())) {
+                System.out.println("validateHeaderChain(): Header " + (i + 1) + " has an invalid previous block hash ID!");
+                return false;
+            }
+        }
+        BlockHeader genesis = chain.getGenesisHeader();
+        if (!genesis.verifySignature(genesis.getCreator()) || !genesis.verifyProofOfWork()) {
+            System.out.println("validateHeaderChain(): Genesis header is tampered!");
+            return false;
+        }
+        if (!DifficultyRules.hasRequiredDifficulty(genesis, 0, chain::getHeader)) {
+            System.out.println("validateHeaderChain(): Genesis header has an unexpected difficulty level!");
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// Class IndexSnapshot holds the indexes of a blockchain, the UTXO set, the
+// address index and the transaction index, as they were once the block with
+// the given height and hash ID had been applied. A wallet saves one next to its
+// block store every so many blocks, and on startup restores the indexes from it
+// so that only the blocks added since have to be replayed. The address index
+// keeps the state of every address but not its history; see AddressIndex. The
+// total work of the chain up to the block is kept too, so that the blocks
+// below it do not have to be read to compare branches.
+public class IndexSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int height;
+    private final String hashID;
+    private final BigInteger chainWork;
+    private final UTXOSet utxoSet;
+    private final AddressIndex addressIndex;
+    private final TransactionIndex transactionIndex;
+
+    // Constructor
+    public IndexSnapshot(int height, String hashID, BigInteger chainWork, UTXOSet utxoSet,
+                         AddressIndex addressIndex, TransactionIndex transactionIndex) {
+        this.height = height;
+        this.hashID = hashID;
+        this.chainWork = chainWork;
+        this.utxoSet = utxoSet;
+        this.addressIndex = addressIndex;
+        this.transactionIndex = transactionIndex;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public String getHashID() {
+        return this.hashID;
+    }
+
+    // Null for a snapshot saved before the chain work was kept.
+    public BigInteger getChainWork() {
+        return this.chainWork;
+    }
+
+    public UTXOSet getUTXOSet() {
+        return this.utxoSet;
+    }
+
+    public AddressIndex getAddressIndex() {
+        return this.addressIndex;
+    }
+
+    public TransactionIndex getTransactionIndex() {
+        return this.transactionIndex;
+    }
+
+    // Method for writing the snapshot to the given file. It goes to a temporary
+    // file first, which then replaces the file, so a crash while writing leaves
+    // the previous snapshot in place.
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream fo = new FileOutputStream(temp);
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fo))) {
+            out.writeObject(this);
+            out.flush();
+            fo.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Method for reading a snapshot written by write().
+    public static IndexSnapshot read(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            return (IndexSnapshot) in.readObject();
+        }
+        catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -1,44 +1,385 @@
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 
 /**
- *  The {@code LedgerList} class represents a wrapper for an ArrayList object that is
- *  used for storing blocks in the chain. The intuition behind this class is to limit
- *  access to the underlying ArrayList object through a tailored API.
+ *  The {@code LedgerList} class represents a list that is used for storing blocks in
+ *  the chain. The intuition behind this class is to limit access to the underlying
+ *  storage through a tailored API.
  *
- *  It supports the following methods: size, getFirst, getLast, add, and findByIndex.
+ *  It supports the following methods: size, getFirst, getLast, add, removeLast,
+ *  findByIndex, findByHash, contains, heightOf, snapshot, load, and attach.
+ *
+ *  The blocks are kept in a persistent vector, i.e., a 32-way trie whose nodes are
+ *  never modified once built: adding or removing a block copies the path to the
+ *  last leaf and shares everything else. A snapshot therefore only has to take
+ *  the current vector, and stays unaffected by later changes to the ledger.
+ *
+ *  Lookups by hash ID go through a map from hash ID to height, which is not
+ *  serialized but rebuilt on first use. As a block's hash ID commits to its
+ *  predecessor, a block always sits at the same height, so the map is never
+ *  cleaned up; an entry only counts if the block at that height is the one
+ *  looked up. A snapshot reads the map of the ledger it was taken from, which
+ *  alone writes to it: once a block is added to the snapshot, the snapshot
+ *  drops the shared map and builds its own on the next lookup.
+ *
+ *  A ledger may be attached to a {@link BlockStore}, which then receives every
+ *  block added or removed, so that the ledger can be loaded again after a
+ *  restart. Snapshots are never attached. If the store fails, the ledger
+ *  carries on in memory only. A loaded ledger reads each block from the store
+ *  the first time it is needed, and keeps it from then on; loading itself only
+ *  takes the hash IDs the store keeps in its index.
  */
-public class LedgerList<T> implements Serializable {
+public class LedgerList<T extends ChainLink> implements Serializable {
     private static final long serialVersionUID = 1L;
-    private ArrayList<T> list;
+    private volatile PersistentVector<T> vector;
+    private transient volatile Map<String, Integer> heights;
+    // whether heights belongs to the ledger this one is a snapshot of
+    private transient boolean sharedHeights = false;
+    private transient BlockStore<T> store = null;
 
     // Constructor
     public LedgerList() {
-        list = new ArrayList<T>();
+        this.vector = PersistentVector.empty();
+    }
+
+    // Private constructor used solely for the purpose of taking snapshots.
+    private LedgerList(PersistentVector<T> vector, Map<String, Integer> heights) {
+        this.vector = vector;
+        this.heights = heights;
+        this.sharedHeights = true;
     }
 
     // Return ledger size.
     public int size() {
-        return this.list.size();
+        return this.vector.count;
     }
 
     // Retrieve the first block in the ledger.
     public T getFirst() {
-        return this.list.get(0);
+        return this.vector.get(0);
     }
 
     // Retrieve the last block in the ledger.
     public T getLast() {
-        return this.list.get(this.size() - 1);
+        PersistentVector<T> v = this.vector;
+        return v.get(v.count - 1);
     }
 
     // Add a block at the end of the ledger.
     public boolean add(T e) {
-        return this.list.add(e);
+        if (this.store != null) {
+            try {
+                this.store.append(e);
+            }
+            catch (IOException ioe) {
+                this.detach(ioe);
+            }
+        }
+        if (this.sharedHeights) {
+            this.heights = null;
+            this.sharedHeights = false;
+        }
+        Map<String, Integer> map = this.heights;
+        if (map != null)
+            map.put(e.getHashID(), this.vector.count);
+        this.vector = this.vector.append(e);
+        return true;
+    }
+
+    // Remove the last block of the ledger, e.g., when switching to another branch.
+    public T removeLast() {
+        PersistentVector<T> v = this.vector;
+        T e = v.get(v.count - 1);
+        if (this.store != null) {
+            try {
+                this.store.truncate(v.count - 1);
+            }
+            catch (IOException ioe) {
+                this.detach(ioe);
+            }
+        }
+        this.vector = v.removeLast();
+        return e;
     }
 
     // Retrieve block at specific index.
     public T findByIndex(int index) {
-        return this.list.get(index);
+        return this.vector.get(index);
+    }
+
+    // Retrieve the block with the given hash ID, or null if there is none.
+    public T findByHash(String hashID) {
+        PersistentVector<T> v = this.vector;
+        int height = this.heightOf(v, hashID);
+        return height < 0 ? null : v.get(height);
+    }
+
+    // Check whether the block with the given hash ID is in the ledger.
+    public boolean contains(String hashID) {
+        return this.heightOf(hashID) >= 0;
+    }
+
+    // Retrieve the height (index) of the block with the given hash ID, or -1.
+    public int heightOf(String hashID) {
+        return this.heightOf(this.vector, hashID);
+    }
+
+    private int heightOf(PersistentVector<T> v, String hashID) {
+        Map<String, Integer> map = this.heights;
+        if (map == null) {
+            map = new ConcurrentHashMap<String, Integer>();
+            for (int i=0; i<v.count; i++)
+                map.put(hashIDOf(v, i), i);
+            this.heights = map;
+        }
+        Integer height = map.get(hashID);
+        if (height == null || height >= v.count || !hashIDOf(v, height).equals(hashID))
+            return -1;
+        return height;
+    }
+
+    // Return a ledger holding the blocks this one holds now. Takes constant time.
+    public LedgerList<T> snapshot() {
+        return new LedgerList<T>(this.vector, this.heights);
+    }
+
+    // Retrieve the hash ID of the block at specific index, without reading the
+    // block from the store.
+    public String hashIDOf(int index) {
+        return hashIDOf(this.vector, index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ChainLink> String hashIDOf(PersistentVector<T> v, int index) {
+        Object e = v.entry(index);
+        return e instanceof StoredBlock ? ((StoredBlock<?>) e).hashID : ((T) e).getHashID();
+    }
+
+    // Return a ledger holding the blocks of the given store, attached to it.
+    // The blocks are read when first needed; those the store is about to
+    // remove are read while they are still there, as snapshots of the ledger
+    // may need them.
+    public static <T extends ChainLink> LedgerList<T> load(BlockStore<T> store)
+            throws IOException {
+        LedgerList<T> ledger = new LedgerList<T>();
+        int size = store.size();
+        ArrayList<StoredBlock<T>> blocks = new ArrayList<StoredBlock<T>>(size);
+        for (int i=0; i<size; i++) {
+            blocks.add(new StoredBlock<T>(store, i, store.hashOf(i)));
+            ledger.vector = ledger.vector.append(blocks.get(i));
+        }
+        store.addTruncateListener(kept -> {
+            for (int i=kept; i<blocks.size(); i++)
+                blocks.get(i).read();
+        });
+        ledger.store = store;
+        return ledger;
+    }
+
+    // Attach the ledger to the given store. Only the blocks after the last
+    // one the store has in common with the ledger are written.
+    public void attach(BlockStore<T> store) throws IOException {
+        PersistentVector<T> v = this.vector;
+        int common = Math.min(v.count, store.size());
+        while (common > 0 && !store.hashOf(common - 1).equals(v.get(common - 1).getHashID()))
+            common--;
+        store.truncate(common);
+        for (int i=common; i<v.count; i++)
+            store.append(v.get(i));
+        store.sync();
+        this.store = store;
+    }
+
+    private void detach(IOException e) {
+        System.out.println("Warning: block store failed, the ledger is no longer "
+                + "saved to disk: " + e.getMessage());
+        this.store = null;
+    }
+
+    // Class StoredBlock stands in for a block of the store a ledger was loaded
+    // from until the block is read. It is serialized as the block itself.
+    private static final class StoredBlock<T extends ChainLink> implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final transient BlockStore<T> store;
+        private final int height;
+        private final String hashID;
+        private volatile T block = null;
+
+        private StoredBlock(BlockStore<T> store, int height, String hashID) {
+            this.store = store;
+            this.height = height;
+            this.hashID = hashID;
+        }
+
+        // Method for reading the block, unless it has been read already.
+        T read() throws IOException {
+            T b = this.block;
+            if (b == null) {
+                b = this.store.get(this.height);
+                if (!b.getHashID().equals(this.hashID))
+                    throw new IOException("block " + this.height + " of the store has been replaced");
+                this.block = b;
+            }
+            return b;
+        }
+
+        T get() {
+            try {
+                return this.read();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("block " + this.height + " cannot be read", e);
+            }
+        }
+
+        private Object writeReplace() {
+            return this.get();
+        }
+    }
+
+    // Class PersistentVector is an immutable, persistent vector: a trie of
+    // 32-element arrays holding all but the last few elements, which are kept
+    // in a separate tail array, so that most appends only copy the tail.
+    private static final class PersistentVector<T> implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final int BITS = 5;
+        private static final int WIDTH = 1 << BITS;
+        private static final int MASK = WIDTH - 1;
+
+        private final int count;
+        // BITS times the depth of the trie below the root
+        private final int shift;
+        private final Object[] root;
+        private final Object[] tail;
+
+        private PersistentVector(int count, int shift, Object[] root, Object[] tail) {
+            this.count = count;
+            this.shift = shift;
+            this.root = root;
+            this.tail = tail;
+        }
+
+        static <T> PersistentVector<T> empty() {
+            return new PersistentVector<T>(0, BITS, new Object[WIDTH], new Object[0]);
+        }
+
+        // Index of the first element held in the tail.
+        private int tailOffset() {
+            return this.count < WIDTH ? 0 : ((this.count - 1) >>> BITS) << BITS;
+        }
+
+        // Method for finding the leaf array holding the element at index i.
+        private Object[] leafFor(int i) {
+            if (i >= this.tailOffset())
+                return this.tail;
+            Object[] node = this.root;
+            for (int level=this.shift; level>0; level-=BITS)
+                node = (Object[]) node[(i >>> level) & MASK];
+            return node;
+        }
+
+        // Method for retrieving the element at index i as it is held, i.e.,
+        // possibly a StoredBlock in place of the block.
+        Object entry(int i) {
+            if (i < 0 || i >= this.count)
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + this.count);
+            return this.leafFor(i)[i & MASK];
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int i) {
+            Object e = this.entry(i);
+            return e instanceof StoredBlock ? (T) ((StoredBlock<?>) e).get() : (T) e;
+        }
+
+        // The element is either of type T or a StoredBlock standing in for one.
+        PersistentVector<T> append(Object e) {
+            // Room left in the tail
+            if (this.count - this.tailOffset() < WIDTH) {
+                Object[] newTail = new Object[this.tail.length + 1];
+                System.arraycopy(this.tail, 0, newTail, 0, this.tail.length);
+                newTail[this.tail.length] = e;
+                return new PersistentVector<T>(this.count + 1, this.shift, this.root, newTail);
+            }
+            // Full tail: push it into the trie, growing a level if the root is full
+            Object[] newRoot;
+            int newShift = this.shift;
+            if ((this.count >>> BITS) > (1 << this.shift)) {
+                newRoot = new Object[WIDTH];
+                newRoot[0] = this.root;
+                newRoot[1] = newPath(this.shift, this.tail);
+                newShift += BITS;
+            }
+            else
+                newRoot = this.pushTail(this.shift, this.root, this.tail);
+            return new PersistentVector<T>(this.count + 1, newShift, newRoot, new Object[] { e });
+        }
+
+        private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+            int i = ((this.count - 1) >>> level) & MASK;
+            Object[] node = parent.clone();
+            if (level == BITS)
+                node[i] = tailNode;
+            else {
+                Object[] child = (Object[]) parent[i];
+                node[i] = child != null
+                        ? this.pushTail(level - BITS, child, tailNode)
+                        : newPath(level - BITS, tailNode);
+            }
+            return node;
+        }
+
+        private static Object[] newPath(int level, Object[] node) {
+            if (level == 0)
+                return node;
+            Object[] path = new Object[WIDTH];
+            path[0] = newPath(level - BITS, node);
+            return path;
+        }
+
+        PersistentVector<T> removeLast() {
+            if (this.count == 0)
+                throw new IllegalStateException("Cannot remove from an empty ledger");
+            if (this.count == 1)
+                return empty();
+            // More than one element in the tail: only the tail changes
+            if (this.count - this.tailOffset() > 1) {
+                Object[] newTail = new Object[this.tail.length - 1];
+                System.arraycopy(this.tail, 0, newTail, 0, newTail.length);
+                return new PersistentVector<T>(this.count - 1, this.shift, this.root, newTail);
+            }
+            // The last leaf of the trie becomes the tail
+            Object[] newTail = this.leafFor(this.count - 2);
+            Object[] newRoot = this.popTail(this.shift, this.root);
+            int newShift = this.shift;
+            if (newRoot == null)
+                newRoot = new Object[WIDTH];
+            if (this.shift > BITS && newRoot[1] == null) {
+                newRoot = (Object[]) newRoot[0];
+                newShift -= BITS;
+            }
+            return new PersistentVector<T>(this.count - 1, newShift, newRoot, newTail);
+        }
+
+        private Object[] popTail(int level, Object[] node) {
+            int i = ((this.count - 2) >>> level) & MASK;
+            if (level > BITS) {
+                Object[] child = this.popTail(level - BITS, (Object[]) node[i]);
+                if (child == null && i == 0)
+                    return null;
+                Object[] copy = node.clone();
+                copy[i] = child;
+                return copy;
+            }
+            if (i == 0)
+                return null;
+            Object[] copy = node.clone();
+            copy[i] = null;
+            return copy;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+import java.io.Serializable;
+import java.util.Base64;
+
+// Class MerkleProof holds the branch of a Merkle tree that links one leaf to the
+// root: the sibling of every node on the path, from the leaf upwards, together
+// with the side it sits on. Its size grows with the logarithm of the number of
+// transactions in the block.
+public class MerkleProof implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String leafHash;
+    // siblings in the form that goes into their parent's hash
+    private final String[] siblings;
+    private final boolean[] siblingOnLeft;
+
+    // Constructor
+    public MerkleProof(String leafHash, String[] siblings, boolean[] siblingOnLeft) {
+        if (siblings.length != siblingOnLeft.length)
+            throw new IllegalArgumentException("Every sibling needs a side");
+        this.leafHash = leafHash;
+        this.siblings = siblings.clone();
+        this.siblingOnLeft = siblingOnLeft.clone();
+    }
+
+    // Method for recomputing the root hash (in Base64 form) the branch leads to.
+    public String computeRoot() {
+        byte[] current = this.leafHash.getBytes();
+        for (int i=0; i<this.siblings.length; i++) {
+            byte[] sibling = this.siblings[i].getBytes();
+            byte[] digest = this.siblingOnLeft[i]
+                    ? MerkleTree.hashChildren(sibling, current, new byte[0])
+                    : MerkleTree.hashChildren(current, sibling, new byte[0]);
+            current = Base64.getEncoder().encode(digest);
+        }
+        return new String(current);
+    }
+
+    // Method for retrieving the hash ID of the proven transaction.
+    public String getLeafHash() {
+        return this.leafHash;
+    }
+
+    public int getDepth() {
+        return this.siblings.length;
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Class MerkleTree holds the node hashes of a block's Merkle tree, so that the
+// root only has to be computed once per set of transactions. The shape is the
+// one of UtilityMethods.computeMerkleTreeRootHash(): a range of leaves is split
+// in the middle, a single leaf is its own node, and a parent is the hash of
+// the Base64 forms of its two children concatenated. Both therefore produce
+// the same root. Large trees are built on the common fork-join pool, one task
+// per subtree, down to PARALLEL_THRESHOLD leaves.
+public class MerkleTree {
+    // Length of the Base64 form of a SHA-256 digest
+    private static final int ENCODED_HASH_LENGTH = 44;
+    // Number of leaves below which a subtree is built on a single thread
+    public static final int PARALLEL_THRESHOLD = 512;
+
+    private final int numberOfLeaves;
+    // Nodes in heap order: the children of node i are 2i+1 and 2i+2. Leaves
+    // keep the bytes of their hash IDs, inner nodes keep raw digests.
+    private final byte[][] nodes;
+    private final boolean[] isLeaf;
+    private final String root;
+
+    // Constructor
+    public MerkleTree(String[] leafHashes) {
+        this.numberOfLeaves = leafHashes.length;
+        this.nodes = new byte[Math.max(1, 4 * leafHashes.length)][];
+        this.isLeaf = new boolean[this.nodes.length];
+        if (leafHashes.length == 0)
+            this.root = "";
+        else {
+            if (leafHashes.length < PARALLEL_THRESHOLD)
+                this.build(leafHashes, 0, 0, leafHashes.length - 1,
+                        new byte[2 * ENCODED_HASH_LENGTH]);
+            else
+                ForkJoinPool.commonPool().invoke(
+                        new BuildTask(leafHashes, 0, 0, leafHashes.length - 1));
+            this.root = new String(this.encoded(0));
+        }
+    }
+
+    // Method for recursively computing the nodes covering the leaves in [start, end].
+    private void build(String[] leafHashes, int node, int start, int end, byte[] buffer) {
+        if (start == end) {
+            this.nodes[node] = leafHashes[start].getBytes();
+            this.isLeaf[node] = true;
+            return;
+        }
+        int mid = (start + end) >> 1;   // (start + end) / 2
+        int left = 2 * node + 1;
+        int right = 2 * node + 2;
+        this.build(leafHashes, left, start, mid, buffer);
+        this.build(leafHashes, right, mid + 1, end, buffer);
+        this.nodes[node] = hashChildren(this.encoded(left), this.encoded(right), buffer);
+    }
+
+    // Class BuildTask computes the nodes covering the leaves in [start, end],
+    // forking one subtask per half as long as the range is large enough. Tasks
+    // write disjoint nodes, and a parent is only hashed once both children
+    // have been joined.
+    private final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String[] leafHashes;
+        private final int node;
+        private final int start;
+        private final int end;
+
+        // Constructor
+        BuildTask(String[] leafHashes, int node, int start, int end) {
+            this.leafHashes = leafHashes;
+            this.node = node;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            byte[] buffer = new byte[2 * ENCODED_HASH_LENGTH];
+            if (this.end - this.start + 1 < PARALLEL_THRESHOLD) {
+                build(this.leafHashes, this.node, this.start, this.end, buffer);
+                return;
+            }
+            int mid = (this.start + this.end) >> 1;
+            int left = 2 * this.node + 1;
+            int right = 2 * this.node + 2;
+            invokeAll(new BuildTask(this.leafHashes, left, this.start, mid),
+                    new BuildTask(this.leafHashes, right, mid + 1, this.end));
+            nodes[this.node] = hashChildren(encoded(left), encoded(right), buffer);
+        }
+    }
+
+    // Method for computing the hash of two concatenated child nodes, using buffer
+    // as scratch space when it is large enough.
+    protected static byte[] hashChildren(byte[] left, byte[] right, byte[] buffer) {
+        int length = left.length + right.length;
+        byte[] message = buffer.length == length ? buffer : new byte[length];
+        System.arraycopy(left, 0, message, 0, left.length);
+        System.arraycopy(right, 0, message, left.length, right.length);
+        return UtilityMethods.messageDigestSHA256_toBytes(message);
+    }
+
+    // Method for retrieving the form of a node that goes into its parent's hash.
+    private byte[] encoded(int node) {
+        if (this.isLeaf[node])
+            return this.nodes[node];
+        return Base64.getEncoder().encode(this.nodes[node]);
+    }
+
+    // Method for building the proof that the leaf at the given index belongs to
+    // the tree. The path is walked from the root down, then reversed.
+    public MerkleProof getProof(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= this.numberOfLeaves)
+            throw new IndexOutOfBoundsException("No leaf at index " + leafIndex);
+        ArrayList<String> siblings = new ArrayList<String>();
+        ArrayList<Boolean> sides = new ArrayList<Boolean>();
+        int node = 0, start = 0, end = this.numberOfLeaves - 1;
+        while (start != end) {
+            int mid = (start + end) >> 1;
+            if (leafIndex <= mid) {
+                siblings.add(new String(this.encoded(2 * node + 2)));
+                sides.add(false);
+                node = 2 * node + 1;
+                end = mid;
+            }
+            else {
+                siblings.add(new String(this.encoded(2 * node + 1)));
+                sides.add(true);
+                node = 2 * node + 2;
+                start = mid + 1;
+            }
+        }
+        int depth = siblings.size();
+        String[] path = new String[depth];
+        boolean[] onLeft = new boolean[depth];
+        for (int i=0; i<depth; i++) {
+            path[i] = siblings.get(depth - 1 - i);
+            onLeft[i] = sides.get(depth - 1 - i);
+        }
+        return new MerkleProof(new String(this.nodes[node]), path, onLeft);
+    }
+
+    // Method for retrieving the root hash in Base64 form.
+    public String getRoot() {
+        return this.root;
+    }
+
+    public int getNumberOfLeaves() {
+        return this.numberOfLeaves;
+    }
+}
@@ -1,23 +1,59 @@
 import jdk.jshell.execution.Util;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class Miner extends Wallet {
+    // Hash rate and mining efficiency of this miner
+    private MiningMetrics metrics = new MiningMetrics();
+    // Engine for searching the nonce space on several cores
+    private NonceSearchEngine searchEngine =
+            new NonceSearchEngine(Configuration.miningThreads(), metrics);
 
     // Constructor
     public Miner(String minerName, String password) {
         super(minerName, password);
+        this.metrics.register(minerName);
     }
 
     // This constructor is redundant
     public Miner(String minerName) {
         super(minerName);
+        this.metrics.register(minerName);
+    }
+
+    public MiningMetrics getMiningMetrics() {
+        return this.metrics;
+    }
+
+    // Method for releasing the threads of the nonce search engine once the
+    // miner has stopped for good.
+    public void stopMining() {
+        this.searchEngine.shutdown();
     }
 
     // Method for mining a block.
     public boolean mineBlock(Block block) {
-        if ((block.mineTheBlock(this.getPublicKey()))) {
+        return this.mineBlock(block, new AtomicBoolean(false));
+    }
+
+    // Method for mining a block that can be aborted mid-search by raising
+    // abortSignal from another thread.
+    public boolean mineBlock(Block block, AtomicBoolean abortSignal) {
+        boolean alreadyMined = block.isMined();
+        long hashes = this.metrics.getTotalHashes();
+        long start = System.nanoTime();
+        boolean mined = block.mineTheBlock(this.getPublicKey(), this.searchEngine, abortSignal);
+        long elapsed = System.nanoTime() - start;
+        hashes = this.metrics.getTotalHashes() - hashes;
+        if (mined && !alreadyMined)
+            this.metrics.recordSolved(hashes, elapsed);
+        else if (!mined && abortSignal.get())
+            this.metrics.recordAborted(hashes, elapsed);
+
+        if (mined) {
             // miner signs the block
             byte[] signature = UtilityMethods.generateSignature(this.getPrivateKey(),
-                    block.getHashID());
+                    block.getHash());
             return block.signTheBlock(this.getPublicKey(), signature);
         }
         else
@@ -43,17 +79,18 @@ public class Miner extends Wallet {
         double amount = Blockchain.MINING_REWARD + block.getTransactionFeeAmount();
         Transaction tx = new Transaction(this.getPublicKey(),
                 this.getPublicKey(), amount, null);
-        UTXO utxo = new UTXOAsMiningReward(tx.getHashID(), tx.getSender(),
-                this.getPublicKey(), amount);
+        UTXO utxo = new UTXOAsMiningReward(tx.getHashID(), 0, tx.getSenderAddress(),
+                this.getAddress(), amount);
         tx.addOutputUTXO(utxo);
         tx.signTheTransaction(this.getPrivateKey());
         return block.generateRewardTransaction(this.getPublicKey(), tx);
     }
 
-    // Method for allowing miners to create new blocks.
-    public Block createNewBlock(Blockchain ledger, int difficultyLevel) {
+    // Method for allowing miners to create new blocks with the target the
+    // ledger requires next.
+    public Block createNewBlock(Blockchain ledger) {
         Block block = new Block(ledger.getLastBlock().getHashID(),
-                difficultyLevel, this.getPublicKey());
+                this.getPublicKey(), ledger.getNextTargetBits());
         return block;
     }
 }
\ No newline at end of file
@@ -11,7 +11,7 @@ public final class MinerGenesisMessageTaskManager extends
     // Maximum sign-in bonuses the genesis miner will send out.
     public static final int SIGN_IN_BONUS_USERS_LIMIT = 1_000;
     // List of wallets that the genesis miner has collected.
-    private HashMap<String, KeyNamePair> users = new HashMap<String, KeyNamePair>();
+    private HashMap<Address, KeyNamePair> users = new HashMap<Address, KeyNamePair>();
     private WalletConnectionAgent agent;
     private final int signInBonus = 1_000;
     // List of wallets to which the genesis miner needs to send sign-in bonuses.
@@ -64,10 +64,7 @@ public final class MinerGenesisMessageTaskManager extends
                         myWallet().getName(), pk.getName());
                 ArrayList<Transaction> tss = new ArrayList<Transaction>();
                 tss.add(tx);
-                MinerTheWorker worker = new MinerTheWorker(myWallet(),
-                        this, this.agent, tss);
-                Thread miningThread = new Thread(worker);
-                miningThread.start();
+                this.startMining(tss);
             }
             else {
                 // Broadcast this transaction
@@ -84,10 +81,14 @@ public final class MinerGenesisMessageTaskManager extends
     // Method specifying the genesis miner's behavior when receiving a block.
     protected void receiveMessageBlockBroadcast(MessageBlockBroadcast mbb) {
         Block block = mbb.getMessageBody();
+        Block lastBlock = myWallet().getLocalLedger().getLastBlock();
         boolean b = myWallet().verifyGuestBlock(block, myWallet().getLocalLedger());
         boolean c = false;
         if (b)
-            this.myWallet().updateLocalLedger(block);
+            c = this.myWallet().updateLocalLedger(block);
+        this.afterBlockReceived(lastBlock);
+        // The genesis miner keeps no pool; the list is only emptied
+        this.myWallet().takeDisconnectedTransactions();
 
         if (b && c) {
             System.out.println("New block is added to the local blockchain, "
@@ -101,9 +102,10 @@ public final class MinerGenesisMessageTaskManager extends
             // Check if this block is a sign-in bonus block; if it is, mine it again.
             if (block.getCreator().equals(myWallet().getPublicKey())) {
                 System.out.println("Genesis miner needs to re-mine a sign-in bonus block.");
-                String id = UtilityMethods.getKeyString(
-                        block.getTransaction(0).getOutputUTXO(0).getReceiver());
+                Address id = block.getTransaction(0).getOutputUTXO(0).getReceiver();
                 KeyNamePair pk = users.get(id);
+                // The funds of the rejected bonus can go into the new one
+                myWallet().releaseInputs(block.getTransaction(0));
                 if (pk != null) {
                     // Add at the beginning of the waiting list
                     waitingListForSignInBonus.add(pk);
@@ -121,13 +123,17 @@ public final class MinerGenesisMessageTaskManager extends
         // Ignore such messages
     }
 
+    protected void transactionsDisconnected(ArrayList<Transaction> transactions) {
+        // Ignored like broadcast transactions
+    }
+
     // MessageAddressPrivate messages must originate from the message service provider.
     protected void receiveMessageAddressPrivate(MessageAddressPrivate map) {
         ArrayList<KeyNamePair> all = map.getMessageBody();
         for (int i=0; i<all.size(); i++) {
             KeyNamePair pk = all.get(i);
-            String id = UtilityMethods.getKeyString(pk.getKey());
-            if (!pk.getKey().equals(myWallet().getPublicKey())
+            Address id = Address.of(pk.getKey());
+            if (!id.equals(myWallet().getAddress())
                 && !users.containsKey(id)) {
                 users.put(id, pk);
                 if (users.size() <= SIGN_IN_BONUS_USERS_LIMIT)
@@ -166,8 +172,8 @@ public final class MinerGenesisMessageTaskManager extends
         for (int i=0; i<all.size(); i++) {
             UTXO utxo = all.get(i);
             System.out.println("\t\t" + utxo.getFundTransferred() + "|" + utxo.getHashID()
-                + "|from = " + UtilityMethods.getKeyString(utxo.getSender())
-                + "|to = " + UtilityMethods.getKeyString(utxo.getReceiver()));
+                + "|from = " + utxo.getSender()
+                + "|to = " + utxo.getReceiver());
             income += utxo.getFundTransferred();
         }
         System.out.printf("\t----- Total Income = %.2f ----------%n", income);
@@ -177,8 +183,8 @@ public final class MinerGenesisMessageTaskManager extends
         for (int i=0; i<spent.size(); i++) {
             UTXO utxo = spent.get(i);
             System.out.println("\t\t" + utxo.getFundTransferred() + "|" + utxo.getHashID()
-                    + "|from = " + UtilityMethods.getKeyString(utxo.getSender())
-                    + "|to = " + UtilityMethods.getKeyString(utxo.getReceiver()));
+                    + "|from = " + utxo.getSender()
+                    + "|to = " + utxo.getReceiver());
             income += utxo.getFundTransferred();
         }
         System.out.printf("\t----- Total Spending = %.2f ----------%n", income);
@@ -193,8 +199,8 @@ public final class MinerGenesisMessageTaskManager extends
         for (int i=0; i<unspent.size(); i++) {
             UTXO utxo = unspent.get(i);
             System.out.println("\t\t" + utxo.getFundTransferred() + "|" + utxo.getHashID()
-                    + "|from = " + UtilityMethods.getKeyString(utxo.getSender())
-                    + "|to = " + UtilityMethods.getKeyString(utxo.getReceiver()));
+                    + "|from = " + utxo.getSender()
+                    + "|to = " + utxo.getReceiver());
             income += utxo.getFundTransferred();
         }
         System.out.printf("\t----- Total Unspent = %.2f ----------%n", income);
@@ -1,11 +1,19 @@
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class MinerMessageTaskManager extends WalletMessageTaskManager implements Runnable {
     private boolean miningAction = true;
     private ArrayList<Transaction> existingTransactions = new ArrayList<Transaction>();
+    // Transactions handed to the current or last worker. Their inputs stay
+    // reserved until their block is confirmed, or the chain moves on without it.
+    private ArrayList<Transaction> inFlightTransactions = new ArrayList<Transaction>();
+    // Hash IDs of the UTXOs spent by the pooled and in-flight transactions
+    private HashSet<Outpoint> pooledInputs = new HashSet<Outpoint>();
     private WalletConnectionAgent agent;
+    // The worker currently mining a block, if any
+    private MinerTheWorker worker = null;
 
     // Constructor
     public MinerMessageTaskManager(WalletConnectionAgent agent, Miner miner,
@@ -16,6 +24,7 @@ public class MinerMessageTaskManager extends WalletMessageTaskManager implements
 
     protected synchronized void resetMiningAction() {
         this.miningAction = true;
+        this.worker = null;
     }
 
     protected synchronized boolean getMiningAction() {
@@ -26,6 +35,92 @@ public class MinerMessageTaskManager extends WalletMessageTaskManager implements
         this.miningAction = false;
     }
 
+    // Method for starting a MinerTheWorker that mines a block containing
+    // the input transactions.
+    protected synchronized void startMining(ArrayList<Transaction> transactions) {
+        this.worker = new MinerTheWorker(myWallet(), this, this.agent, transactions);
+        Thread miningThread = new Thread(this.worker);
+        miningThread.start();
+    }
+
+    // Method for signaling the running worker, if any, that its block is stale.
+    // Returns true if there was a worker to abort.
+    protected synchronized boolean abortMining() {
+        if (this.worker == null)
+            return false;
+        this.worker.abort();
+        return true;
+    }
+
+    // Method called by an aborted worker. Its transactions that did not make it
+    // into the local blockchain go back to the pool, and mining restarts on top
+    // of the new last block.
+    protected synchronized void miningAborted(ArrayList<Transaction> transactions) {
+        ArrayList<Transaction> candidates = new ArrayList<Transaction>(transactions);
+        candidates.addAll(this.existingTransactions);
+        this.existingTransactions = new ArrayList<Transaction>();
+        this.inFlightTransactions = new ArrayList<Transaction>();
+        this.pooledInputs.clear();
+        // Transactions that made it into the new block, or that now conflict
+        // with it, are dropped
+        for (int i=0; i<candidates.size(); i++) {
+            Transaction tx = candidates.get(i);
+            if (myWallet().validateTransaction(tx) && this.reserveInputs(tx))
+                this.existingTransactions.add(tx);
+        }
+        this.resetMiningAction();
+        this.startMiningIfReady();
+    }
+
+    // Method for assessing if it is good to start building a block, and if so,
+    // handing the pooled transactions over to a new worker.
+    private synchronized void startMiningIfReady() {
+        if (this.existingTransactions.size() >= Block.TRANSACTION_LOWER_LIMIT
+            && this.getMiningAction()) {
+            this.raiseMiningAction();
+            System.out.println(myWallet().getName() + " has enough transactions "
+                            + "to mine the block now, miningAction requirement met. "
+                            + "Start mining a new block...");
+            // Create a MinerTheWorker to mine the block
+            this.startMining(this.existingTransactions);
+            // Once the mining starts, pool new incoming Transactions. The
+            // inputs of the block's transactions stay reserved.
+            this.inFlightTransactions = this.existingTransactions;
+            this.existingTransactions = new ArrayList<Transaction>();
+        }
+    }
+
+    // Method for sorting out the transactions of the last block mined, once
+    // the chain has moved on and no worker is left: those confirmed by the
+    // chain, or now in conflict with it, free their inputs, while the others
+    // go back to the pool. An aborted worker has miningAborted() do it.
+    private synchronized void settleInFlightTransactions() {
+        if (this.worker != null || this.inFlightTransactions.isEmpty())
+            return;
+        ArrayList<Transaction> transactions = this.inFlightTransactions;
+        this.inFlightTransactions = new ArrayList<Transaction>();
+        for (int i=0; i<transactions.size(); i++) {
+            Transaction tx = transactions.get(i);
+            for (int x=0; x<tx.getNumberOfInputs(); x++)
+                this.pooledInputs.remove(tx.getInput(x));
+            if (myWallet().validateTransaction(tx) && this.reserveInputs(tx))
+                this.existingTransactions.add(tx);
+        }
+        this.startMiningIfReady();
+    }
+
+    // Method for recording the inputs of a transaction entering the pool.
+    // Fails, recording nothing, if a pooled transaction already spends one.
+    private boolean reserveInputs(Transaction tx) {
+        int n = tx.getNumberOfInputs();
+        for (int i=0; i<n; i++)
+            if (this.pooledInputs.contains(tx.getInput(i)))
+                return false;
+        for (int i=0; i<n; i++)
+            this.pooledInputs.add(tx.getInput(i));
+        return true;
+    }
+
     // A miner must respond to a query for blockchain.
     protected void receiveQueryForBlockchainBroadcast(MessageAskForBlockchainBroadcast mabcb) {
         PublicKey receiver = mabcb.getSenderKey();
@@ -46,12 +141,11 @@ public class MinerMessageTaskManager extends WalletMessageTaskManager implements
     // TODO: Disallow miners from collecting transactions temporarily if
     // they're currently mining a block and have won a number of consecutive
     // mining competitions.
-    protected void receiveMessageTransactionBroadcast(MessageTransactionBroadcast mtb) {
+    protected synchronized void receiveMessageTransactionBroadcast(MessageTransactionBroadcast mtb) {
         Transaction tx = mtb.getMessageBody();
         // tx should not be already present in the current transaction pool
-        for (int i=0; i<this.existingTransactions.size(); i++)
-            if (tx.equals(this.existingTransactions.get(i)))
-                return;
+        if (this.isPooled(tx))
+            return;
 
         // Only add this transaction into the existing storage if it is valid.
         // Otherwise, ignore it.
@@ -60,23 +154,68 @@ public class MinerMessageTaskManager extends WalletMessageTaskManager implements
                             + " found an invalid transaction.");
             return;
         }
+        // A transaction spending a UTXO already spent in the pool is a double-spend
+        if (!this.reserveInputs(tx)) {
+            System.out.println("Miner " + myWallet().getName()
+                            + " found a double-spending transaction.");
+            return;
+        }
         this.existingTransactions.add(tx);
+        this.startMiningIfReady();
+    }
 
-        // Assess if it is good to start building a block
-        if (this.existingTransactions.size() >= Block.TRANSACTION_LOWER_LIMIT
-            && this.getMiningAction()) {
-            this.raiseMiningAction();
-            System.out.println(myWallet().getName() + " has enough transactions "
-                            + "to mine the block now, miningAction requirement met. "
-                            + "Start mining a new block...");
-            // Create a MinerTheWorker to mine the block
-            MinerTheWorker worker = new MinerTheWorker(myWallet(),
-                    this, this.agent, this.existingTransactions);
-            Thread miningThread = new Thread(worker);
-            miningThread.start();
-            // Once the mining starts, pool new incoming Transactions
-            this.existingTransactions = new ArrayList<Transaction>();
+    // Transactions taken off the chain by a reorganization go back to the pool,
+    // unless they are in it already or conflict with it.
+    protected synchronized void transactionsDisconnected(ArrayList<Transaction> transactions) {
+        for (int i=0; i<transactions.size(); i++) {
+            Transaction tx = transactions.get(i);
+            if (!this.isPooled(tx) && myWallet().validateTransaction(tx) && this.reserveInputs(tx))
+                this.existingTransactions.add(tx);
         }
+        this.startMiningIfReady();
+    }
+
+    private boolean isPooled(Transaction tx) {
+        for (int i=0; i<this.existingTransactions.size(); i++)
+            if (tx.equals(this.existingTransactions.get(i)))
+                return true;
+        for (int i=0; i<this.inFlightTransactions.size(); i++)
+            if (tx.equals(this.inFlightTransactions.get(i)))
+                return true;
+        return false;
+    }
+
+    // A miner stops working on its current block as soon as a competing block
+    // extending its local blockchain is accepted.
+    protected void receiveMessageBlockBroadcast(MessageBlockBroadcast mbb) {
+        Block lastBlock = myWallet().getLocalLedger().getLastBlock();
+        super.receiveMessageBlockBroadcast(mbb);
+        this.afterBlockReceived(lastBlock);
+    }
+
+    // Method for aborting the current work, settling the transactions of the
+    // last block mined, and recording who won the block, if the local
+    // blockchain no longer ends with the given block.
+    protected void afterBlockReceived(Block lastBlock) {
+        Block newLastBlock = myWallet().getLocalLedger().getLastBlock();
+        if (newLastBlock == lastBlock)
+            return;
+        boolean aborted = this.abortMining();
+        this.settleInFlightTransactions();
+        if (newLastBlock.getCreator().equals(myWallet().getPublicKey()))
+            myWallet().getMiningMetrics().recordBlockWon();
+        // A competitor's block only counts as lost if this miner was mining one
+        else if (aborted)
+            myWallet().getMiningMetrics().recordBlockLost();
+    }
+
+    // Stopping the manager stops the miner: the current block is abandoned and
+    // the threads of the miner's search engine are released.
+    @Override
+    public void close() {
+        super.close();
+        this.abortMining();
+        myWallet().stopMining();
     }
 
     @Override
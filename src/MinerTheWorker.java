@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 // Class MinerTheWorker must have access to the miner it works for,
 // the message task manager, the network connection agent, and the
@@ -7,7 +8,8 @@ public class MinerTheWorker implements Runnable {
     private Miner miner;
     private WalletConnectionAgent agent;
     private MinerMessageTaskManager manager;
-    private boolean resume = true;
+    // Raised when the block being mined has become stale
+    private final AtomicBoolean aborted = new AtomicBoolean(false);
     private ArrayList<Transaction> existingTransactions = null;
 
     // Constructor
@@ -22,8 +24,7 @@ public class MinerTheWorker implements Runnable {
     public void run() {
         final long breakTime = 2;
         System.out.printf("Miner %s begins mining a block...%n", miner.getName());
-        Block block = miner.createNewBlock(miner.getLocalLedger(),
-                Configuration.blockMiningDifficultyLevel());
+        Block block = miner.createNewBlock(miner.getLocalLedger());
         for (int i=0; i<this.existingTransactions.size(); i++)
             miner.addTransaction(this.existingTransactions.get(i), block);
 
@@ -37,17 +38,22 @@ public class MinerTheWorker implements Runnable {
         }
 
         // Check if mining task should be aborted
-        if (!resume) {
-            manager.resetMiningAction();
+        if (this.aborted.get()) {
+            manager.miningAborted(this.existingTransactions);
             return;
         }
 
-        // Mine block
-        boolean b = miner.mineBlock(block);
+        // Mine block. The search stops as soon as abort() is called.
+        boolean b = miner.mineBlock(block, this.aborted);
         if (b) {
             System.out.printf("%s mined and signed the block, hashID is:%n", miner.getName());
             System.out.println(block.getHashID());
         }
+        else if (this.aborted.get()) {
+            System.out.printf("%s stopped mining a stale block.%n", miner.getName());
+            manager.miningAborted(this.existingTransactions);
+            return;
+        }
         else {
             System.out.printf("%s failed to mine the block. Aborting...%n", miner.getName());
             manager.resetMiningAction();
@@ -62,8 +68,8 @@ public class MinerTheWorker implements Runnable {
         }
 
         // Check if mining task should be aborted
-        if (!resume) {
-            manager.resetMiningAction();
+        if (this.aborted.get()) {
+            manager.miningAborted(this.existingTransactions);
             return;
         }
 
@@ -78,6 +84,6 @@ public class MinerTheWorker implements Runnable {
 
     // Method for providing a mechanism to abort the mining process.
     protected void abort() {
-        this.resume = false;
+        this.aborted.set(true);
     }
 }
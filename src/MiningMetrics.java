@@ -0,0 +1,109 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+// Class MiningMetrics records how much work a miner does and how much of it
+// pays off: hashes computed, time to solution, work lost to stale blocks, and
+// how many blocks the miner won or lost against its competitors. Counters are
+// updated by the mining threads and can be read at any time, in process or
+// through JMX.
+public class MiningMetrics implements MiningMetricsMBean {
+    private final LongAdder hashes = new LongAdder();
+    private final AtomicLong miningTimeNanos = new AtomicLong();
+    private final AtomicLong blocksSolved = new AtomicLong();
+    private final AtomicLong solvedHashes = new AtomicLong();
+    private final AtomicLong solvingTimeNanos = new AtomicLong();
+    private final AtomicLong blocksAborted = new AtomicLong();
+    private final AtomicLong staleHashes = new AtomicLong();
+    private final AtomicLong blocksWon = new AtomicLong();
+    private final AtomicLong blocksLost = new AtomicLong();
+
+    // Method for registering the metrics with the platform MBean server.
+    // Failing to do so only means they are not visible over JMX.
+    public void register(String minerName) {
+        try {
+            ObjectName name = new ObjectName("blockchain:type=MiningMetrics,name="
+                    + ObjectName.quote(minerName));
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        }
+        catch (Exception e) {
+            System.out.println("Mining metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    // Method called by the mining threads as they compute hashes.
+    protected void addHashes(long n) {
+        this.hashes.add(n);
+    }
+
+    // Method for recording a block that was successfully mined.
+    protected void recordSolved(long hashes, long nanos) {
+        this.blocksSolved.incrementAndGet();
+        this.solvedHashes.addAndGet(hashes);
+        this.solvingTimeNanos.addAndGet(nanos);
+        this.miningTimeNanos.addAndGet(nanos);
+    }
+
+    // Method for recording a block whose mining was aborted because it became stale.
+    protected void recordAborted(long hashes, long nanos) {
+        this.blocksAborted.incrementAndGet();
+        this.staleHashes.addAndGet(hashes);
+        this.miningTimeNanos.addAndGet(nanos);
+    }
+
+    // Method for recording a block of this miner accepted into the local blockchain.
+    protected void recordBlockWon() {
+        this.blocksWon.incrementAndGet();
+    }
+
+    // Method for recording a block of a competitor accepted into the local blockchain.
+    protected void recordBlockLost() {
+        this.blocksLost.incrementAndGet();
+    }
+
+    public long getTotalHashes() {
+        return this.hashes.sum();
+    }
+
+    public double getHashesPerSecond() {
+        long nanos = this.miningTimeNanos.get();
+        return nanos == 0 ? 0.0 : this.getTotalHashes() * 1e9 / nanos;
+    }
+
+    public long getBlocksSolved() {
+        return this.blocksSolved.get();
+    }
+
+    public long getBlocksAborted() {
+        return this.blocksAborted.get();
+    }
+
+    public long getStaleHashes() {
+        return this.staleHashes.get();
+    }
+
+    public double getAverageAttemptsPerBlock() {
+        long n = this.blocksSolved.get();
+        return n == 0 ? 0.0 : (double) this.solvedHashes.get() / n;
+    }
+
+    public double getAverageTimeToSolutionMillis() {
+        long n = this.blocksSolved.get();
+        return n == 0 ? 0.0 : this.solvingTimeNanos.get() / 1e6 / n;
+    }
+
+    public long getBlocksWon() {
+        return this.blocksWon.get();
+    }
+
+    public long getBlocksLost() {
+        return this.blocksLost.get();
+    }
+
+    public double getWinShare() {
+        long total = this.blocksWon.get() + this.blocksLost.get();
+        return total == 0 ? 0.0 : (double) this.blocksWon.get() / total;
+    }
+}
@@ -0,0 +1,13 @@
+// Management interface through which MiningMetrics are exposed over JMX.
+public interface MiningMetricsMBean {
+    long getTotalHashes();
+    double getHashesPerSecond();
+    long getBlocksSolved();
+    long getBlocksAborted();
+    long getStaleHashes();
+    double getAverageAttemptsPerBlock();
+    double getAverageTimeToSolutionMillis();
+    long getBlocksWon();
+    long getBlocksLost();
+    double getWinShare();
+}
@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Class NonceSearchEngine partitions the nonce space of a block across a fixed
+// pool of worker threads. All workers stop as soon as one of them finds a nonce
+// for which the block's hash meets its target.
+public class NonceSearchEngine {
+    // Number of hashes a worker computes between two updates of the metrics
+    private static final int METRICS_BATCH = 4096;
+
+    private final int numberOfThreads;
+    private final ExecutorService pool;
+    private final MiningMetrics metrics;
+
+    // Constructor
+    public NonceSearchEngine(int numberOfThreads) {
+        this(numberOfThreads, new MiningMetrics());
+    }
+
+    // Constructor reporting the computed hashes to the given metrics
+    public NonceSearchEngine(int numberOfThreads, MiningMetrics metrics) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+        this.metrics = metrics;
+        this.pool = Executors.newFixedThreadPool(this.numberOfThreads, r -> {
+            Thread t = new Thread(r, "nonce-search");
+            // Mining threads must not keep the application alive
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getNumberOfThreads() {
+        return this.numberOfThreads;
+    }
+
+    public MiningMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    // Method for searching the nonce range of a block's current header prefix.
+    // Returns the winning nonce, or null if no valid nonce was found.
+    public Long search(Block block) {
+        return this.search(block, new AtomicBoolean(false));
+    }
+
+    // Method for searching the nonce range of a block's current header prefix
+    // until a valid nonce is found or the abort signal is raised by another
+    // thread. Returns the winning nonce, or null if the range was exhausted or
+    // the search was aborted.
+    public Long search(Block block, AtomicBoolean abortSignal) {
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicReference<Long> winner = new AtomicReference<Long>(null);
+        // The fixed part of the header is hashed once for all workers
+        BlockHeaderHasher template = new BlockHeaderHasher(block);
+
+        // Each worker covers a contiguous slice of the nonce range
+        long space = Configuration.nonceSearchRange();
+        long sliceSize = space / this.numberOfThreads;
+        ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i=0; i<this.numberOfThreads; i++) {
+            long start = i * sliceSize;
+            long end = (i == this.numberOfThreads - 1) ? space : start + sliceSize;
+            tasks.add(() -> {
+                searchSlice(block, template.copy(), start, end, stop, abortSignal, winner, metrics);
+                return null;
+            });
+        }
+
+        try {
+            this.pool.invokeAll(tasks);
+        }
+        catch (InterruptedException e) {
+            stop.set(true);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (abortSignal.get())
+            return null;
+        return winner.get();
+    }
+
+    // Method for scanning the nonces in [start, end) until a valid one is found,
+    // another worker has already won, or the search is aborted.
+    private static void searchSlice(Block block, BlockHeaderHasher hasher, long start, long end,
+                                    AtomicBoolean stop, AtomicBoolean abortSignal,
+                                    AtomicReference<Long> winner, MiningMetrics metrics) {
+        int count = 0;   // hashes not yet reported to the metrics
+        try {
+            for (long nonce=start; nonce<end && !stop.get() && !abortSignal.get(); nonce++) {
+                count++;
+                if (block.hashMeetsTarget(hasher.hash(nonce))) {
+                    if (stop.compareAndSet(false, true))
+                        winner.set(nonce);
+                    return;
+                }
+                if (count == METRICS_BATCH) {
+                    metrics.addHashes(count);
+                    count = 0;
+                }
+            }
+        }
+        finally {
+            metrics.addHashes(count);
+        }
+    }
+
+    // Method for releasing the worker threads.
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+}
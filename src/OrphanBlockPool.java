@@ -0,0 +1,119 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Class OrphanBlockPool holds blocks that arrived before their parent, keyed by
+// the hash ID of the missing parent, so they can be connected as soon as the
+// parent shows up. The pool is bounded: blocks older than the configured
+// timeout are dropped, and when it is full, the oldest block makes room. No
+// creator may hold more than a given number of the blocks: past that, the
+// creator's own oldest block makes room.
+public class OrphanBlockPool {
+    private final int capacity;
+    private final int creatorCapacity;
+    private final long timeout;
+    // orphans waiting for each missing parent
+    private final HashMap<String, ArrayList<Block>> byParent = new HashMap<String, ArrayList<Block>>();
+    // every orphan by hash ID, oldest first, mapped to its arrival time
+    private final LinkedHashMap<String, Long> arrivals = new LinkedHashMap<String, Long>();
+    private final HashMap<String, Block> blocks = new HashMap<String, Block>();
+    // number of orphans of each creator
+    private final HashMap<Address, Integer> byCreator = new HashMap<Address, Integer>();
+
+    // Constructor
+    public OrphanBlockPool(int capacity, int creatorCapacity, long timeout) {
+        this.capacity = capacity;
+        this.creatorCapacity = creatorCapacity;
+        this.timeout = timeout;
+    }
+
+    // Method for adding an orphan block. Returns false if it is already pooled.
+    public synchronized boolean add(Block block) {
+        String hashID = block.getHashID();
+        if (this.blocks.containsKey(hashID))
+            return false;
+        this.evictExpired(UtilityMethods.getTimeStamp());
+        Address creator = Address.of(block.getCreator());
+        if (this.byCreator.getOrDefault(creator, 0) >= this.creatorCapacity)
+            this.remove(this.oldestOf(creator));
+        while (this.blocks.size() >= this.capacity)
+            this.remove(this.arrivals.keySet().iterator().next());
+
+        this.byCreator.merge(creator, 1, Integer::sum);
+        this.blocks.put(hashID, block);
+        this.arrivals.put(hashID, UtilityMethods.getTimeStamp());
+        this.byParent.computeIfAbsent(block.getPreviousBlockHashID(),
+                k -> new ArrayList<Block>()).add(block);
+        return true;
+    }
+
+    // Method for taking out of the pool the orphans whose parent is the block
+    // with the given hash ID.
+    public synchronized ArrayList<Block> removeChildren(String parentHashID) {
+        ArrayList<Block> children = this.byParent.remove(parentHashID);
+        if (children == null)
+            return new ArrayList<Block>();
+        for (int i=0; i<children.size(); i++) {
+            String hashID = children.get(i).getHashID();
+            this.blocks.remove(hashID);
+            this.arrivals.remove(hashID);
+            this.uncount(children.get(i));
+        }
+        return children;
+    }
+
+    // Method for finding the hash ID of the oldest orphan of the given creator.
+    private String oldestOf(Address creator) {
+        for (String hashID : this.arrivals.keySet()) {
+            if (Address.of(this.blocks.get(hashID).getCreator()).equals(creator))
+                return hashID;
+        }
+        return null;
+    }
+
+    public synchronized boolean contains(String hashID) {
+        return this.blocks.containsKey(hashID);
+    }
+
+    public synchronized int size() {
+        return this.blocks.size();
+    }
+
+    // Method for dropping the orphans that arrived before now - timeout. As
+    // arrivals are kept in order, only the oldest ones need to be looked at.
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Long>> it = this.arrivals.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            if (e.getValue() > now - this.timeout)
+                break;
+            it.remove();
+            this.detach(this.blocks.remove(e.getKey()));
+        }
+    }
+
+    private void remove(String hashID) {
+        this.arrivals.remove(hashID);
+        this.detach(this.blocks.remove(hashID));
+    }
+
+    // Method for removing a block from the list of its parent and from the
+    // count of its creator.
+    private void detach(Block block) {
+        this.uncount(block);
+        ArrayList<Block> siblings = this.byParent.get(block.getPreviousBlockHashID());
+        if (siblings != null) {
+            siblings.remove(block);
+            if (siblings.isEmpty())
+                this.byParent.remove(block.getPreviousBlockHashID());
+        }
+    }
+
+    private void uncount(Block block) {
+        Address creator = Address.of(block.getCreator());
+        if (this.byCreator.merge(creator, -1, Integer::sum) <= 0)
+            this.byCreator.remove(creator);
+    }
+}
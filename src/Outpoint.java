@@ -0,0 +1,45 @@
+import java.io.Serializable;
+
+// Class Outpoint identifies a UTXO by the transaction that created it and its
+// position among that transaction's outputs. Transactions refer to the UTXOs
+// they spend by outpoint, and the blockchain resolves them against its UTXO
+// set, so the UTXOs themselves are stored only once.
+public final class Outpoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String transactionID;
+    private final int index;
+
+    // Constructor
+    public Outpoint(String transactionID, int index) {
+        this.transactionID = transactionID;
+        this.index = index;
+    }
+
+    public String getTransactionID() {
+        return this.transactionID;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Outpoint))
+            return false;
+        Outpoint other = (Outpoint) o;
+        return this.index == other.index && this.transactionID.equals(other.transactionID);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.transactionID.hashCode() + this.index;
+    }
+
+    @Override
+    public String toString() {
+        return this.transactionID + ":" + this.index;
+    }
+}
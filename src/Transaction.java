@@ -1,3 +1,5 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
@@ -10,10 +12,12 @@ public class Transaction implements Serializable {
 	public static final double TRANSACTION_FEE = 1.0;
 	private String hashID;
 	private PublicKey sender;
-	private PublicKey[] receivers;
+	private Address[] receivers;
 	private double[] fundToTransfer;
 	private long timestamp;
-	private ArrayList<UTXO> inputs = null;
+	// UTXOs spent, by outpoint, and the amount each of them holds
+	private Outpoint[] inputs = null;
+	private double[] inputFunds = null;
 	private ArrayList<UTXO> outputs = new ArrayList<UTXO>(4);
 	private byte[] signature = null;
 	private boolean signed = false;
@@ -22,16 +26,25 @@ public class Transaction implements Serializable {
 	// Constructor for single receiver
 	public Transaction(PublicKey sender, PublicKey receiver,
 					   double fundToTransfer, ArrayList<UTXO> inputs) {
-		PublicKey[] pks = new PublicKey[1];
-		pks[0] = receiver;
+		Address[] addresses = new Address[1];
+		addresses[0] = Address.of(receiver);
 		double[] funds = new double[1];
 		funds[0] = fundToTransfer;
-		this.setUp(sender, pks, funds, inputs);
+		this.setUp(sender, addresses, funds, inputs);
 	}
 
 	// Constructor for multiple receivers
 	public Transaction(PublicKey sender, PublicKey[] receivers,
 					   double[] fundToTransfer, ArrayList<UTXO> inputs) {
+		Address[] addresses = new Address[receivers.length];
+		for (int i=0; i<receivers.length; i++)
+			addresses[i] = Address.of(receivers[i]);
+		this.setUp(sender, addresses, fundToTransfer, inputs);
+	}
+
+	// Constructor for multiple receivers known by their addresses only
+	public Transaction(PublicKey sender, Address[] receivers,
+					   double[] fundToTransfer, ArrayList<UTXO> inputs) {
 		this.setUp(sender, receivers, fundToTransfer, inputs);
 	}
 
@@ -40,33 +53,38 @@ public class Transaction implements Serializable {
 			return false;
 
 		double totalCost = this.getTotalFundToTransfer() + Transaction.TRANSACTION_FEE;
-		double availableAmount = 0.0;
-		for (int i=0; i<this.inputs.size(); i++)
-			availableAmount += this.inputs.get(i).getFundTransferred();
+		double availableAmount = this.getTotalInputFund();
 
 		if (availableAmount < totalCost)
 			return false;
 
 		this.outputs.clear();
+		Address from = this.getSenderAddress();
 		for (int i=0; i<receivers.length; i++) {
-			UTXO utxo = new UTXO(this.getHashID(), this.sender,
+			UTXO utxo = new UTXO(this.getHashID(), i, from,
 					receivers[i], this.fundToTransfer[i]);
 			this.outputs.add(utxo);
 		}
-		UTXO change = new UTXO(this.getHashID(), this.sender,
-				this.sender, availableAmount - totalCost);
+		UTXO change = new UTXO(this.getHashID(), receivers.length, from,
+				from, availableAmount - totalCost);
 		this.outputs.add(change);
 		return true;
 	}
 
-	private void setUp(PublicKey sender, PublicKey[] receivers,
+	private void setUp(PublicKey sender, Address[] receivers,
 					   double[] fundToTransfer, ArrayList<UTXO> inputs) {
 		this.mySequentialNumber = UtilityMethods.getUniqueNumber();
 		this.sender = sender;
-		this.receivers = new PublicKey[1];
 		this.receivers = receivers;
 		this.fundToTransfer = fundToTransfer;
-		this.inputs = inputs;
+		if (inputs != null) {
+			this.inputs = new Outpoint[inputs.size()];
+			this.inputFunds = new double[inputs.size()];
+			for (int i=0; i<inputs.size(); i++) {
+				this.inputs[i] = inputs.get(i).getOutpoint();
+				this.inputFunds[i] = inputs.get(i).getFundTransferred();
+			}
+		}
 		this.timestamp = Calendar.getInstance().getTimeInMillis();
 		computeHashID();
 	}
@@ -79,41 +97,96 @@ public class Transaction implements Serializable {
 	}
 
 	public boolean verifySignature() {
-		String message = getMessageData();
-		return UtilityMethods.verifySignature(this.sender, this.signature, message);
-	}
-
-	private String getMessageData() {
-		StringBuilder sb = new StringBuilder();
-		sb.append(UtilityMethods.getKeyString(sender)
-				+ Long.toHexString(this.timestamp)
-				+ Long.toString(this.mySequentialNumber));
-
-		for (int i=0; i<this.receivers.length; i++)
-			sb.append(UtilityMethods.getKeyString(this.receivers[i])
-					+ Double.toHexString(this.fundToTransfer[i]));
-
-		for (int i=0; i<this.getNumberOfInputUTXOs(); i++) {
-			UTXO utxo = this.getInputUTXO(i);
-			sb.append(utxo.getHashID());
+		if (this.signature == null)
+			return false;
+		return UtilityMethods.verifySignature(this.sender, this.signature, getMessageData());
+	}
+
+	// Method for encoding what the sender signs, and what the hash ID is computed
+	// from, as bytes: the encoded sender key, the timestamp and sequential
+	// number, every receiver's address with its amount, and every input's
+	// outpoint with its amount. Variable-length parts are prefixed with their
+	// length, so that different transactions cannot encode alike.
+	private ByteBuffer getMessageData() {
+		byte[] key = this.sender.getEncoded();
+		int n = this.getNumberOfInputs();
+		byte[][] parents = new byte[n][];
+		int size = 4 + key.length + 8 + 8 + 4 + this.receivers.length * (Address.LENGTH + 8) + 4;
+		for (int i=0; i<n; i++) {
+			parents[i] = this.inputs[i].getTransactionID().getBytes(StandardCharsets.UTF_8);
+			size += 4 + parents[i].length + 4 + 8;
 		}
 
-		return sb.toString();
+		ByteBuffer message = ByteBuffer.allocate(size);
+		message.putInt(key.length).put(key);
+		message.putLong(this.timestamp).putLong(this.mySequentialNumber);
+		message.putInt(this.receivers.length);
+		for (int i=0; i<this.receivers.length; i++)
+			message.put(this.receivers[i].getID()).putDouble(this.fundToTransfer[i]);
+		message.putInt(n);
+		for (int i=0; i<n; i++)
+			message.putInt(parents[i].length).put(parents[i])
+					.putInt(this.inputs[i].getIndex()).putDouble(this.inputFunds[i]);
+		message.flip();
+		return message;
 	}
 
 	protected void computeHashID() {
-		String message = getMessageData();
-		this.hashID = UtilityMethods.messageDigestSHA256_toString(message);
+		this.hashID = UtilityMethods.messageDigestSHA256_toString(getMessageData());
 	}
 
 	public String getHashID() {
 		return this.hashID;
 	}
 
+	// Method for checking that the hash ID matches the transaction's data, and
+	// that every output is at the outpoint the hash ID and its position make.
+	// Neither is covered by the signature, and the UTXO set relies on both.
+	public boolean verifyOutpoints() {
+		if (!UtilityMethods.messageDigestSHA256_toString(getMessageData()).equals(this.hashID))
+			return false;
+		for (int i=0; i<this.outputs.size(); i++) {
+			UTXO utxo = this.outputs.get(i);
+			if (utxo.getIndex() != i || !this.hashID.equals(utxo.getParentTransactionID()))
+				return false;
+		}
+		return true;
+	}
+
+	// Method for checking that the outputs pay what the sender signed for: one
+	// output per receiver, in order, with the signed amount, then the change
+	// back to the sender, which leaves at least the transaction fee out of the
+	// inputs. The outputs are not covered by the signature themselves.
+	public boolean verifyOutputs() {
+		int n = this.receivers.length;
+		if (this.fundToTransfer.length != n || this.outputs.size() != n + 1)
+			return false;
+		Address from = this.getSenderAddress();
+		for (int i=0; i<=n; i++) {
+			UTXO utxo = this.outputs.get(i);
+			Address to = i < n ? this.receivers[i] : from;
+			if (utxo.isMiningReward() || !utxo.getSender().equals(from) || !utxo.getReceiver().equals(to))
+				return false;
+			if (i < n && (this.fundToTransfer[i] < 0 || utxo.getFundTransferred() != this.fundToTransfer[i]))
+				return false;
+		}
+		// computed as in prepareOutputUTXOs()
+		double change = this.getTotalInputFund()
+				- (this.getTotalFundToTransfer() + Transaction.TRANSACTION_FEE);
+		double paid = this.outputs.get(n).getFundTransferred();
+		return paid >= 0 && paid <= change;
+	}
+
 	public PublicKey getSender() {
 		return this.sender;
 	}
 
+	// The sender's key is revealed here; the UTXOs it spends are paid to
+	// this address.
+	public Address getSenderAddress() {
+		return Address.of(this.sender);
+	}
+
 	public long getTimeStamp() {
 		return this.timestamp;
 	}
@@ -142,14 +215,26 @@ public class Transaction implements Serializable {
 		return this.outputs.get(i);
 	}
 
-	public int getNumberOfInputUTXOs() {
+	public int getNumberOfInputs() {
 		if (this.inputs == null)
 			return 0;
-		return this.inputs.size();
+		return this.inputs.length;
+	}
+
+	public Outpoint getInput(int i) {
+		return this.inputs[i];
 	}
 
-	public UTXO getInputUTXO(int i) {
-		return this.inputs.get(i);
+	// The amount of the UTXO spent by the given input, as signed by the sender.
+	public double getInputFund(int i) {
+		return this.inputFunds[i];
+	}
+
+	public double getTotalInputFund() {
+		double total = 0;
+		for (int i=0; i<this.getNumberOfInputs(); i++)
+			total += this.inputFunds[i];
+		return total;
 	}
 
 	// Transactions are considered equal if they have the same hash ID.
@@ -0,0 +1,75 @@
+import java.io.Serializable;
+import java.util.HashMap;
+
+// Class TransactionIndex maps the hash ID of every transaction on a blockchain,
+// reward transactions included, to where it is found on the chain. It is
+// updated one block at a time, as blocks are added.
+public class TransactionIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final HashMap<String, Location> locations = new HashMap<String, Location>();
+
+    // Class Location identifies a transaction by the height of its block and its
+    // position inside the block. The reward transaction comes after all others,
+    // so the position is also the transaction's leaf index in the Merkle tree.
+    public static class Location implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int height;
+        private final int position;
+        private final boolean reward;
+
+        // Constructor
+        public Location(int height, int position, boolean reward) {
+            this.height = height;
+            this.position = position;
+            this.reward = reward;
+        }
+
+        public int getHeight() {
+            return this.height;
+        }
+
+        public int getPosition() {
+            return this.position;
+        }
+
+        public boolean isReward() {
+            return this.reward;
+        }
+    }
+
+    // Method for indexing the transactions of the block found at the given height.
+    public void applyBlock(Block block, int height) {
+        int size = block.getTotalNumberOfTransactions();
+        for (int i=0; i<size; i++)
+            this.locations.put(block.getTransaction(i).getHashID(), new Location(height, i, false));
+        Transaction rt = block.getRewardTransaction();
+        if (rt != null)
+            this.locations.put(rt.getHashID(), new Location(height, size, true));
+    }
+
+    // Method for removing the transactions of the block found at the given height.
+    public void revertBlock(Block block, int height) {
+        int size = block.getTotalNumberOfTransactions();
+        for (int i=0; i<size; i++)
+            this.remove(block.getTransaction(i).getHashID(), height);
+        Transaction rt = block.getRewardTransaction();
+        if (rt != null)
+            this.remove(rt.getHashID(), height);
+    }
+
+    private void remove(String transactionHashID, int height) {
+        Location location = this.locations.get(transactionHashID);
+        if (location != null && location.getHeight() == height)
+            this.locations.remove(transactionHashID);
+    }
+
+    // Method for retrieving the location of the transaction with the given hash
+    // ID, or null if it is not on the chain.
+    public Location get(String transactionHashID) {
+        return this.locations.get(transactionHashID);
+    }
+
+    public int size() {
+        return this.locations.size();
+    }
+}
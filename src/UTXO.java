@@ -1,22 +1,25 @@
-import java.security.PublicKey;
 import java.io.Serializable;
 
-// Class UTXO represents spendable funds
+// Class UTXO represents spendable funds. It is paid to the address of the
+// receiver, and only the holder of the matching key can spend it.
 public class UTXO implements Serializable {
     private static final long serialVersionUID = 1L;
     private String hashID;
     private String parentTransactionID;
-    private PublicKey sender;
-    private PublicKey receiver;
+    // position among the outputs of the parent transaction
+    private int index;
+    private Address sender;
+    private Address receiver;
     private long timestamp;
     private double fundTransferred;
     private long sequentialNumber = 0;
 
     // Constructor
-    public UTXO(String parentTransactionID, PublicKey sender,
-                PublicKey receiver, double fundToTransfer) {
+    public UTXO(String parentTransactionID, int index, Address sender,
+                Address receiver, double fundToTransfer) {
         this.sequentialNumber = UtilityMethods.getUniqueNumber();
         this.parentTransactionID = parentTransactionID;
+        this.index = index;
         this.sender = sender;
         this.receiver = receiver;
         this.fundTransferred = fundToTransfer;
@@ -26,8 +29,9 @@ public class UTXO implements Serializable {
 
     protected String computeHashID() {
         String message = this.parentTransactionID
-                + UtilityMethods.getKeyString(this.sender)
-                + UtilityMethods.getKeyString(this.receiver)
+                + Integer.toHexString(this.index)
+                + this.sender
+                + this.receiver
                 + Double.toHexString(this.fundTransferred)
                 + Long.toHexString(this.timestamp)
                 + Long.toHexString(this.sequentialNumber);
@@ -43,11 +47,20 @@ public class UTXO implements Serializable {
         return this.parentTransactionID;
     }
 
-    public PublicKey getSender() {
+    public int getIndex() {
+        return this.index;
+    }
+
+    // Method for retrieving the reference transactions use to spend this UTXO.
+    public Outpoint getOutpoint() {
+        return new Outpoint(this.parentTransactionID, this.index);
+    }
+
+    public Address getSender() {
         return this.sender;
     }
 
-    public PublicKey getReceiver() {
+    public Address getReceiver() {
         return this.receiver;
     }
 
@@ -1,11 +1,10 @@
-import java.security.PublicKey;
 public class UTXOAsMiningReward extends UTXO {
     private static final long serialVersionUID = 1L;
 
     // Constructor
-    public UTXOAsMiningReward(String parentTransactionUID, PublicKey sender,
-                              PublicKey receiver, double fundToTransfer) {
-        super(parentTransactionUID, sender, receiver, fundToTransfer);   //call super
+    public UTXOAsMiningReward(String parentTransactionUID, int index, Address sender,
+                              Address receiver, double fundToTransfer) {
+        super(parentTransactionUID, index, sender, receiver, fundToTransfer);   //call super
     }
 
     public boolean isMiningReward() {
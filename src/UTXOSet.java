@@ -0,0 +1,81 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+// Class UTXOSet keeps the outputs of a blockchain that have not been spent yet,
+// keyed by outpoint. It is updated one block at a time, as blocks are added
+// to the chain, so queries do not have to go through the whole chain. Outputs
+// are kept in the order they were created.
+public class UTXOSet implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final LinkedHashMap<Outpoint, UTXO> unspent = new LinkedHashMap<Outpoint, UTXO>();
+
+    // Method for applying the block found at the given height: the inputs of its
+    // transactions are removed, while their outputs and the block's reward are
+    // added. Same as in Blockchain.findRelatedUTXOs(), the inputs of the genesis
+    // block are not considered spent, and a reward only counts if it goes to
+    // the block's creator. Returns the UTXOs removed, in order, which are needed
+    // to revert the block.
+    public ArrayList<UTXO> applyBlock(Block block, int height) {
+        ArrayList<UTXO> removed = new ArrayList<UTXO>();
+        int size = block.getTotalNumberOfTransactions();
+        for (int i=0; i<size; i++) {
+            Transaction tx = block.getTransaction(i);
+            if (height != 0) {
+                for (int x=0; x<tx.getNumberOfInputs(); x++) {
+                    UTXO utxo = this.unspent.remove(tx.getInput(x));
+                    if (utxo != null)
+                        removed.add(utxo);
+                }
+            }
+            for (int x=0; x<tx.getNumberOfOutputUTXOs(); x++) {
+                UTXO ux = tx.getOutputUTXO(x);
+                this.unspent.put(ux.getOutpoint(), ux);
+            }
+        }
+
+        Transaction rt = block.getRewardTransaction();
+        if (rt != null && rt.getNumberOfOutputUTXOs() > 0) {
+            UTXO ux = rt.getOutputUTXO(0);
+            if (ux.getReceiver().matches(block.getCreator()))
+                this.unspent.put(ux.getOutpoint(), ux);
+        }
+        return removed;
+    }
+
+    // Method for undoing applyBlock(), given the UTXOs it removed. The steps are
+    // taken in reverse, so an output spent within the same block is not
+    // brought back. Restored UTXOs move to the end of the iteration order.
+    public void revertBlock(Block block, ArrayList<UTXO> removed) {
+        Transaction rt = block.getRewardTransaction();
+        if (rt != null && rt.getNumberOfOutputUTXOs() > 0)
+            this.unspent.remove(rt.getOutputUTXO(0).getOutpoint());
+
+        int next = removed.size() - 1;
+        for (int i=block.getTotalNumberOfTransactions()-1; i>=0; i--) {
+            Transaction tx = block.getTransaction(i);
+            for (int x=tx.getNumberOfOutputUTXOs()-1; x>=0; x--)
+                this.unspent.remove(tx.getOutputUTXO(x).getOutpoint());
+            for (int x=tx.getNumberOfInputs()-1; x>=0 && next>=0; x--) {
+                if (removed.get(next).getOutpoint().equals(tx.getInput(x))) {
+                    this.unspent.put(tx.getInput(x), removed.get(next));
+                    next--;
+                }
+            }
+        }
+    }
+
+    // Method for checking whether the UTXO at the given outpoint is unspent.
+    public boolean contains(Outpoint outpoint) {
+        return this.unspent.containsKey(outpoint);
+    }
+
+    // Method for retrieving the unspent UTXO at the given outpoint, or null.
+    public UTXO get(Outpoint outpoint) {
+        return this.unspent.get(outpoint);
+    }
+
+    public int size() {
+        return this.unspent.size();
+    }
+}
@@ -5,6 +5,8 @@ import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 // import java.io.PrintStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.AlgorithmParameters;
 import java.security.Key;
 import java.security.KeyPair;
@@ -16,6 +18,7 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.spec.KeySpec;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Calendar;
 import java.util.InputMismatchException;
@@ -26,21 +29,61 @@ public class UtilityMethods {
 
 	// private static final String SIGNING_ALGORITHM = Configuration.signatureAlgorithm();
 
-	public static byte[] messageDigestSHA256_toBytes(String message) {
+	// Digest and signature engines are kept per thread and reused, so that hashing
+	// and signing neither look up a provider nor allocate an engine on every call.
+	// The engines are not re-entrant: a method must be done with an engine before
+	// calling another method that uses the same one.
+	private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST =
+			ThreadLocal.withInitial(UtilityMethods::newMessageDigest);
+	private static final ThreadLocal<Signature> SIGNATURE =
+			ThreadLocal.withInitial(UtilityMethods::newSignature);
+
+	// Method for creating a new digest engine for the configured hash algorithm.
+	public static MessageDigest newMessageDigest() {
 		try {
-			MessageDigest md = MessageDigest.getInstance(Configuration.hashAlgorithm());
-			md.update(message.getBytes());
-			return md.digest();
+			return MessageDigest.getInstance(Configuration.hashAlgorithm());
 		}
 		catch(NoSuchAlgorithmException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	private static Signature newSignature() {
+		try {
+			return Signature.getInstance(Configuration.signatureAlgorithm());
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static byte[] messageDigestSHA256_toBytes(String message) {
+		return messageDigestSHA256_toBytes(message.getBytes());
+	}
+
+	public static byte[] messageDigestSHA256_toBytes(byte[] message) {
+		MessageDigest md = MESSAGE_DIGEST.get();
+		md.reset();
+		return md.digest(message);
+	}
+
+	// Method for hashing the remaining bytes of a buffer. The buffer's position
+	// is advanced to its limit.
+	public static byte[] messageDigestSHA256_toBytes(ByteBuffer message) {
+		MessageDigest md = MESSAGE_DIGEST.get();
+		md.reset();
+		md.update(message);
+		return md.digest();
+	}
+
 	public static String messageDigestSHA256_toString(String message) {
 		return Base64.getEncoder().encodeToString(messageDigestSHA256_toBytes(message));
 	}
 
+	public static String messageDigestSHA256_toString(ByteBuffer message) {
+		return Base64.getEncoder().encodeToString(messageDigestSHA256_toBytes(message));
+	}
+
 	public static long getTimeStamp() {
 		return Calendar.getInstance().getTimeInMillis();
 	}
@@ -53,17 +96,102 @@ public class UtilityMethods {
 		return true;
 	}
 
+	// Method for checking the difficulty level directly on the digest bytes,
+	// without building the binary string. It agrees with the String version
+	// applied to toBinaryString(hash).
+	public static boolean hashMeetsDifficultyLevel(byte[] hash, int difficultyLevel) {
+		return countLeadingZeroBits(hash) >= difficultyLevel;
+	}
+
+	// Method for counting the leading '0' characters toBinaryString() would produce.
+	public static int countLeadingZeroBits(byte[] hash) {
+		int count = 0;
+		for (int i=0; i<hash.length; i++) {
+			// Same byte transformation as in toBinaryString()
+			int x = (((int) hash[i]) + 128) & 0xFF;
+			if (x != 0)
+				return count + Integer.numberOfLeadingZeros(x) - (Integer.SIZE - Byte.SIZE);
+			count += Byte.SIZE;
+		}
+		return count;
+	}
+
+	// Method for checking a hash against a 256-bit target: the digest, read as an
+	// unsigned big-endian number, must not exceed the target.
+	public static boolean hashMeetsTarget(byte[] hash, byte[] target) {
+		for (int i=0; i<hash.length; i++) {
+			int h = hash[i] & 0xFF;
+			int t = target[i] & 0xFF;
+			if (h != t)
+				return h < t;
+		}
+		return true;
+	}
+
+	// Method for decoding a compact target: the highest byte holds the size of
+	// the target in bytes, the lower three bytes hold its most significant bytes.
+	public static BigInteger decodeCompactTarget(int bits) {
+		int size = bits >>> 24;
+		long mantissa = bits & 0x007FFFFF;
+		if (size <= 3)
+			return BigInteger.valueOf(mantissa >> (8 * (3 - size)));
+		return BigInteger.valueOf(mantissa).shiftLeft(8 * (size - 3));
+	}
+
+	// Method for encoding a target in compact form. Precision beyond the three
+	// most significant bytes is dropped.
+	public static int encodeCompactTarget(BigInteger target) {
+		int size = (target.bitLength() + 7) / 8;
+		long mantissa;
+		if (size <= 3)
+			mantissa = target.longValue() << (8 * (3 - size));
+		else
+			mantissa = target.shiftRight(8 * (size - 3)).longValue();
+		// The 0x00800000 bit would be read as a sign, so move to a bigger size
+		if ((mantissa & 0x00800000) != 0) {
+			mantissa >>= 8;
+			size++;
+		}
+		return (int) (mantissa | ((long) size << 24));
+	}
+
+	// Method for converting a target into the 32 bytes hashes are compared against.
+	// Targets that do not fit, such as the 2^256 of difficulty level 0, are clamped
+	// to the largest 256-bit target, which every hash meets.
+	public static byte[] toTargetBytes(BigInteger target) {
+		byte[] result = new byte[32];
+		if (target.bitLength() > 256) {
+			Arrays.fill(result, (byte) 0xFF);
+			return result;
+		}
+		byte[] b = target.toByteArray();
+		int n = Math.min(b.length, result.length);
+		System.arraycopy(b, b.length - n, result, result.length - n, n);
+		return result;
+	}
+
+	// Method for computing the target that requires as much work as the
+	// leading-zero difficulty level.
+	public static BigInteger difficultyLevelToTarget(int difficultyLevel) {
+		return BigInteger.ONE.shiftLeft(256 - difficultyLevel);
+	}
+
+	// Method for computing the whole difficulty level closest to a target, for display.
+	public static int targetToDifficultyLevel(BigInteger target) {
+		return 256 - target.bitLength() + 1;
+	}
+
+	// Method for rendering a hash as a string of '0' and '1', used for display
+	// and as the block's hash ID.
 	public static String toBinaryString(byte[] hash) {
-		StringBuilder sb = new StringBuilder();
+		char[] c = new char[hash.length * Byte.SIZE];
 		for (int i=0; i<hash.length; i++) {
 			// Transform a byte into an unsigned integer.
 			int x = ((int) hash[i]) + 128;
-			String s = Integer.toBinaryString(x);
-			while (s.length() < 8)
-				s = "0" + s;  // prepend a leading zero
-			sb.append(s);
+			for (int j=0; j<Byte.SIZE; j++)
+				c[i * Byte.SIZE + j] = ((x >> (Byte.SIZE - 1 - j)) & 1) == 0 ? '0' : '1';
 		}
-		return sb.toString();
+		return new String(c);
 	}
 
 	public static long getUniqueNumber() {
@@ -83,10 +211,28 @@ public class UtilityMethods {
 	}
 
 	public static byte[] generateSignature(PrivateKey privateKey, String message) {
+		return generateSignature(privateKey, message.getBytes());
+	}
+
+	public static byte[] generateSignature(PrivateKey privateKey, byte[] message) {
+		try {
+			Signature sig = SIGNATURE.get();
+			sig.initSign(privateKey);
+			sig.update(message);
+			return sig.sign();
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// Method for signing the remaining bytes of a buffer. The buffer's position
+	// is advanced to its limit.
+	public static byte[] generateSignature(PrivateKey privateKey, ByteBuffer message) {
 		try {
-			Signature sig = Signature.getInstance(Configuration.signatureAlgorithm());
+			Signature sig = SIGNATURE.get();
 			sig.initSign(privateKey);
-			sig.update(message.getBytes());
+			sig.update(message);
 			return sig.sign();
 		}
 		catch (Exception e) {
@@ -95,10 +241,27 @@ public class UtilityMethods {
 	}
 
 	public static boolean verifySignature(PublicKey publicKey, byte[] signature, String message) {
+		return verifySignature(publicKey, signature, message.getBytes());
+	}
+
+	public static boolean verifySignature(PublicKey publicKey, byte[] signature, byte[] message) {
 		try {
-			Signature sig2 = Signature.getInstance(Configuration.signatureAlgorithm());
+			Signature sig2 = SIGNATURE.get();
 			sig2.initVerify(publicKey);
-			sig2.update(message.getBytes());
+			sig2.update(message);
+			return sig2.verify(signature);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	public static boolean verifySignature(PublicKey publicKey, byte[] signature, ByteBuffer message) {
+		try {
+			Signature sig2 = SIGNATURE.get();
+			sig2.initVerify(publicKey);
+			sig2.update(message);
 			return sig2.verify(signature);
 		}
 		catch (Exception e) {
@@ -122,7 +285,7 @@ public class UtilityMethods {
 	// Method for building output depicting a UTXO with proper indentation.
 	public static void displayUTXO(UTXO ux, StringBuilder out, int level) {
 		displayTab(out, level, "Fund: " + ux.getFundTransferred()
-				+ ", Receiver: " + UtilityMethods.getKeyString(ux.getReceiver()));
+				+ ", Receiver: " + ux.getReceiver());
 	}
 
 	// Method for building output depicting a Transaction with proper indentation.
@@ -133,10 +296,9 @@ public class UtilityMethods {
 		displayTab(out, level + 1, "Total fund to be transferred: " + tx.getTotalFundToTransfer());
 
 		displayTab(out, level + 1, "Input:");
-		for (int i=0; i<tx.getNumberOfInputUTXOs(); i++) {
-			UTXO ui = tx.getInputUTXO(i);
-			displayUTXO(ui, out, level + 2);
-		}
+		for (int i=0; i<tx.getNumberOfInputs(); i++)
+			displayTab(out, level + 2, "Fund: " + tx.getInputFund(i)
+					+ ", Outpoint: " + tx.getInput(i));
 
 		displayTab(out, level + 1, "Output:");
 		for (int i=0; i<tx.getNumberOfOutputUTXOs() - 1; i++) {
@@ -324,6 +486,16 @@ public class UtilityMethods {
 		}
 	}
 
+	// Method for checking a Merkle proof against a block header: the branch must
+	// lead from the transaction to the Merkle root committed to by the header.
+	// The header itself is trusted as is, so it should come from a validated
+	// HeaderChain.
+	public static boolean verifyMerkleProof(MerkleProof proof, BlockHeader header) {
+		if (proof == null || header == null)
+			return false;
+		return proof.computeRoot().equals(header.getMerkleRoot());
+	}
+
 	// Method for displaying the contents of a block.
 	public static void displayBlock(Block block, StringBuilder out, int level) {
 		displayTab(out, level, "Block{");
@@ -7,7 +7,10 @@ import java.io.FileNotFoundException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -17,6 +20,22 @@ public class Wallet {
 	private String walletName;
 	private static String keyLocation = Configuration.KeyLocation();
 	private Blockchain localLedger = null;  // wallet's local copy of the blockchain
+	// where the local ledger is kept on disk; null if it cannot be
+	private BlockStore<Block> blockStore = null;
+	// where the indexes of the local ledger are saved, and the height they
+	// were last saved at
+	private File indexSnapshot = null;
+	private int indexSnapshotHeight = 0;
+	// UTXOs used by transactions of this wallet that may not be in the blockchain
+	// yet, mapped to the time their reservation expires
+	private HashMap<Outpoint, Long> pendingInputs = new HashMap<Outpoint, Long>();
+	// transactions taken off the local ledger by a reorganization that are
+	// still valid, until a miner takes them back into its pool
+	private ArrayList<Transaction> disconnectedTransactions = new ArrayList<Transaction>();
+	// blocks that arrived before their parent
+	private OrphanBlockPool orphanBlocks = new OrphanBlockPool(
+			Configuration.orphanPoolSize(), Configuration.orphanBlocksPerCreator(),
+			Configuration.orphanBlockTimeout());
 
 	// Constructor
 	public Wallet(String walletName, String password) {
@@ -37,6 +56,7 @@ public class Wallet {
 				throw new RuntimeException(ioe);
 			}
 		}
+		this.openBlockStore();
 	}
 
 	// Constructor with only the wallet's name as input
@@ -53,6 +73,10 @@ public class Wallet {
 		return this.keyPair.getPublic();
 	}
 
+	public Address getAddress() {
+		return Address.intern(this.keyPair.getPublic());
+	}
+
 	public PrivateKey getPrivateKey() {
 		return this.keyPair.getPrivate();
 	}
@@ -119,6 +143,96 @@ public class Wallet {
 		this.keyPair = (KeyPair) (in.readObject());
 	}
 
+	// Method for deriving the name of the block store directory from the wallet
+	// name. Characters other than letters, digits, '-' and '_' are replaced, so
+	// that names containing '/' or ".." stay inside the block store location.
+	private String blockStoreName() {
+		return this.getName().replaceAll("[^A-Za-z0-9_-]", "_");
+	}
+
+	// Method for opening the block store of the wallet, and loading the local
+	// ledger it holds from a previous run. Without a store, the wallet keeps
+	// its ledger in memory only.
+	private void openBlockStore() {
+		File dir = new File(Configuration.blockStoreLocation(), this.blockStoreName());
+		try {
+			this.blockStore = new BlockStore<Block>(dir);
+		}
+		catch (IOException e) {
+			System.out.printf("%s] Warning: local blockchain will not be saved to disk: %s%n",
+					this.getName(), e.getMessage());
+			return;
+		}
+		this.indexSnapshot = new File(dir, Configuration.indexSnapshotFile());
+		try {
+			// The disk is trusted no more than the network: the blocks past the
+			// index snapshot are validated, and the store is cut before the
+			// first one that does not validate
+			this.localLedger = Blockchain.load(this.blockStore, this.indexSnapshot);
+			if (this.localLedger != null) {
+				System.out.printf("%s] Loaded local blockchain from disk, size = %d%n",
+						this.getName(), this.localLedger.size());
+				// Without a restored snapshot, the next block on a long enough chain saves one
+				this.indexSnapshotHeight = this.localLedger.getRestoredSnapshotHeight();
+			}
+		}
+		catch (IOException e) {
+			// The store is overwritten once the wallet receives a blockchain
+			System.out.printf("%s] Warning: stored blockchain cannot be read: %s%n",
+					this.getName(), e.getMessage());
+			this.localLedger = null;
+		}
+	}
+
+	// Method for saving a newly set local ledger to the block store.
+	private void persistLocalLedger() {
+		if (this.blockStore == null)
+			return;
+		try {
+			this.localLedger.persistTo(this.blockStore);
+		}
+		catch (IOException e) {
+			System.out.printf("%s] Warning: local blockchain will not be saved to disk: %s%n",
+					this.getName(), e.getMessage());
+			this.closeBlockStore();
+		}
+	}
+
+	// Method for saving the indexes of the local ledger, once enough blocks
+	// have been added since they were last saved, or whenever asked to. The
+	// blocks are synced first, so that the snapshot never gets ahead of them.
+	private void saveIndexSnapshot(boolean force) {
+		if (this.blockStore == null || this.localLedger == null)
+			return;
+		int height = this.localLedger.size() - 1;
+		if (!force && height - this.indexSnapshotHeight < Configuration.indexSnapshotInterval())
+			return;
+		try {
+			this.blockStore.sync();
+			this.localLedger.saveIndexSnapshot(this.indexSnapshot);
+			this.indexSnapshotHeight = height;
+		}
+		catch (IOException e) {
+			System.out.printf("%s] Warning: index snapshot could not be saved: %s%n",
+					this.getName(), e.getMessage());
+		}
+	}
+
+	// Method for syncing and releasing the block store, e.g. on shutdown. The
+	// indexes are saved along, so that the next start has nothing to replay.
+	public synchronized void closeBlockStore() {
+		if (this.blockStore == null)
+			return;
+		this.saveIndexSnapshot(true);
+		try {
+			this.blockStore.close();
+		}
+		catch (IOException e) {
+			System.out.println("Warning: block store did not close cleanly: " + e.getMessage());
+		}
+		this.blockStore = null;
+	}
+
 	// Getter method for retrieving the local ledger.
 	public synchronized Blockchain getLocalLedger() {
 		return this.localLedger;
@@ -126,37 +240,35 @@ public class Wallet {
 
 	// Setter method for updating the wallet's local ledger to the input ledger.
 	public synchronized boolean setLocalLedger(Blockchain ledger) {
-		// Validate incoming ledger
-		boolean b = Blockchain.validateBlockchain(ledger);
-		if (!b) {
-			System.out.printf("%s] Warning: incoming blockchain does not validate!%n", this.getName());
-			return false;
-		}
 		// If the wallet does not have a local ledger initialized yet
 		if (this.localLedger == null) {
+			// Validate incoming ledger
+			boolean b = Blockchain.validateBlockchain(ledger);
+			if (!b) {
+				System.out.printf("%s] Warning: incoming blockchain does not validate!%n", this.getName());
+				return false;
+			}
 			this.localLedger = ledger;
+			this.persistLocalLedger();
 			return true;
 		}
 		else {
-			// Incoming ledger must be strictly longer than local ledger
-			// and both must share the same genesis block
-			if (ledger.size() > this.localLedger.size() &&
-						ledger.getGenesisMiner().equals(this.localLedger.getGenesisMiner())) {
-				this.localLedger = ledger;
-				return true;
-			}
-			else if (ledger.size() <= this.localLedger.size()) {
-				System.out.println(this.getName() + "] Warning: incoming blockchain "
-						+ "is shorter than local blockchain.");
-				System.out.printf("Incoming blockchain size: %d blocks%n", ledger.size());
-				System.out.printf("Local blockchain size: %d blocks%n", this.localLedger.size());
-				return false;
-			}
-			else {
+			// Both ledgers must share the same genesis block
+			if (!ledger.getGenesisMiner().equals(this.localLedger.getGenesisMiner())) {
 				System.out.println(this.getName() + "] Warning: incoming blockchain "
 						+ "and local blockchain have different genesis miners.");
 				return false;
 			}
+			// Only the blocks of the incoming ledger past the last common one are
+			// verified and added; the local ledger switches to them if they carry
+			// more work.
+			if (this.mergeLedger(ledger))
+				return true;
+			System.out.println(this.getName() + "] Warning: incoming blockchain "
+					+ "carries no more work than local blockchain.");
+			System.out.printf("Incoming blockchain size: %d blocks%n", ledger.size());
+			System.out.printf("Local blockchain size: %d blocks%n", this.localLedger.size());
+			return false;
 		}
 	}
 
@@ -179,30 +291,104 @@ public class Wallet {
 			}
 			if (max != null) {
 				this.localLedger = max;
+				this.persistLocalLedger();
 				return true;
 			}
 			else return false;
 		}
 		else {   // local ledger is already initialized
-			// Find the longest validating blockchain
-			Blockchain max = this.localLedger;
+			// Merge the new blocks of every chain; the local ledger ends up
+			// on the branch with the most work
 			for (int i=0; i<chains.size(); i++) {
 				Blockchain bc = chains.get(i);
-				boolean b = bc.getGenesisMiner().equals(this.localLedger.getGenesisMiner());
-				if (b && bc.size() > max.size() && Blockchain.validateBlockchain(bc))
-					max = bc;
+				if (bc.getGenesisMiner().equals(this.localLedger.getGenesisMiner()))
+					this.mergeLedger(bc);
 			}
-			this.localLedger = max;
 			return true;
 		}
 	}
 
+	// Method for merging the blocks of an incoming ledger that the local ledger
+	// does not know yet. The incoming ledger is not validated as a whole: only
+	// the blocks after the last block both ledgers share are verified and added,
+	// and the local ledger switches to them if they carry more work. Returns
+	// true if the last block of the local ledger has changed.
+	private boolean mergeLedger(Blockchain ledger) {
+		int fork = ledger.size() - 1;
+		while (fork >= 0 && !this.localLedger.isKnownBlock(ledger.getBlock(fork).getHashID()))
+			fork--;
+		if (fork < 0) {
+			System.out.println(this.getName() + "] Warning: incoming blockchain "
+					+ "shares no block with local blockchain.");
+			return false;
+		}
+		Block lastBlock = this.localLedger.getLastBlock();
+		for (int i=fork+1; i<ledger.size(); i++) {
+			if (!this.updateLocalLedger(ledger.getBlock(i)))
+				break;
+		}
+		return this.localLedger.getLastBlock() != lastBlock;
+	}
+
 	// When a new block is received, it must be verified before being
-	// added to the local blockchain.
+	// added to the local blockchain. A block whose parent is unknown waits in
+	// the orphan pool, and is added once the parent has been.
 	public synchronized boolean updateLocalLedger(Block block) {
-		if (verifyGuestBlock(block))
-			return this.localLedger.addBlock(block);
-		return false;
+		if (!this.localLedger.isKnownBlock(block.getPreviousBlockHashID())) {
+			// Only blocks with valid work can take up room in the pool, and the
+			// block's own target must be one the chain could ask for
+			if (block.verifySignature(block.getCreator()) && block.verifyProofOfWork()
+					&& block.getTarget().compareTo(UtilityMethods.difficultyLevelToTarget(
+							Configuration.minDifficultyLevel())) <= 0
+					&& this.orphanBlocks.add(block))
+				System.out.printf("\tBlock(%s) waits for its parent to arrive.%n", block.getHashID());
+			return false;
+		}
+		if (!verifyGuestBlock(block) || !this.localLedger.addBlock(block))
+			return false;
+
+		// Connect the orphans waiting for this block, then those waiting for them
+		ArrayDeque<String> parents = new ArrayDeque<String>();
+		parents.add(block.getHashID());
+		while (!parents.isEmpty()) {
+			ArrayList<Block> orphans = this.orphanBlocks.removeChildren(parents.poll());
+			for (int i=0; i<orphans.size(); i++) {
+				Block orphan = orphans.get(i);
+				if (verifyGuestBlock(orphan) && this.localLedger.addBlock(orphan))
+					parents.add(orphan.getHashID());
+			}
+		}
+		this.sortDisconnectedTransactions();
+		this.saveIndexSnapshot(false);
+		return true;
+	}
+
+	// Method for sorting out the transactions that a reorganization of the
+	// local ledger has taken off the chain. Those still valid are kept to be
+	// mined again; for those of this wallet that are not, the inputs are freed.
+	private void sortDisconnectedTransactions() {
+		ArrayList<Transaction> transactions = this.localLedger.takeDisconnectedTransactions();
+		for (int i=0; i<transactions.size(); i++) {
+			Transaction tx = transactions.get(i);
+			if (this.validateTransaction(tx))
+				this.disconnectedTransactions.add(tx);
+			else if (tx.getSender().equals(this.getPublicKey()))
+				this.releaseInputs(tx);
+		}
+	}
+
+	// Method for taking the still valid transactions that reorganizations of
+	// the local ledger have taken off the chain.
+	public synchronized ArrayList<Transaction> takeDisconnectedTransactions() {
+		ArrayList<Transaction> transactions = this.disconnectedTransactions;
+		this.disconnectedTransactions = new ArrayList<Transaction>();
+		return transactions;
+	}
+
+	// Method for checking whether the block with the given hash ID is waiting
+	// for its parent.
+	public boolean isOrphanBlock(String hashID) {
+		return this.orphanBlocks.contains(hashID);
 	}
 
 	// Method for verifying an incoming block against a blockchain.
@@ -213,37 +399,35 @@ public class Wallet {
 			return false;
 		}
 		// Verify PoW including recomputation of the block's hash
-		if (!UtilityMethods.hashMeetsDifficultyLevel(block.getHashID(),
-						block.getDifficultyLevel()) ||
-						!block.computeHashID().equals(block.getHashID())) {
+		if (!block.verifyProofOfWork()) {
 			System.out.printf("\tWarning: Block(%s) mining is not successful!%n",
 					block.getHashID());
 			return false;
 		}
-		// Ensure that the block is built upon the last block
-		if (!ledger.getLastBlock().getHashID().equals(block.getPreviousBlockHashID())) {
-			System.out.printf("\tWarning: Block(%s) mining is not linked to the last block!%n",
+		// Ensure that the block is built upon a known block. Blocks that do not
+		// extend the last block go to a side branch.
+		if (!ledger.isKnownBlock(block.getPreviousBlockHashID())) {
+			System.out.printf("\tWarning: Block(%s) mining is not linked to a known block!%n",
 					block.getHashID());
 			return false;
 		}
-		// Examine if all transactions in the block are valid.
-		int size = block.getTotalNumberOfTransactions();
-		for (int i=0; i<size; i++) {
-			Transaction tx = block.getTransaction(i);
-			if (!validateTransaction(tx)) {
-				System.out.println("\tWarning: Block(" + block.getHashID()
-						+ ") transaction " + i + " is invalid either because "
-						+ "its signature has been tampered, or it already "
-						+ "exists in the blockchain.");
-				return false;
-			}
+		// The difficulty is dictated by the ledger, not by the block
+		if (!ledger.hasRequiredDifficulty(block)) {
+			System.out.printf("\tWarning: Block(%s) does not carry the required difficulty!%n",
+					block.getHashID());
+			return false;
 		}
-		Transaction tr = block.getRewardTransaction();
-		if (tr.getTotalFundToTransfer() > Blockchain.MINING_REWARD + block.getTransactionFeeAmount()) {
-			System.out.printf("\tWarning: Block(%s) overrewarded%n", block.getHashID());
+		// So is the range of its timestamp, which the difficulty depends on
+		if (!ledger.hasValidTimeStamp(block)) {
+			System.out.printf("\tWarning: Block(%s) has an invalid timestamp!%n", block.getHashID());
 			return false;
 		}
-		return true;
+		// Transactions can only be checked against the state the block builds on.
+		// Those of a block on a side branch are checked by the ledger when, and
+		// if, it switches to that branch.
+		if (!ledger.getLastBlock().getHashID().equals(block.getPreviousBlockHashID()))
+			return true;
+		return ledger.verifyBlockTransactions(block);
 	}
 
 	// Method for verifying a newly arrived guest block.
@@ -253,6 +437,11 @@ public class Wallet {
 
 	// Method for validating transactions before collecting them into a block.
 	public boolean validateTransaction(Transaction tx) {
+		return this.validateTransaction(tx, this.getLocalLedger());
+	}
+
+	// Method for validating a transaction against the input ledger.
+	public boolean validateTransaction(Transaction tx, Blockchain ledger) {
 		if (tx == null)
 			return false;
 		if (!tx.verifySignature()) {
@@ -261,15 +450,23 @@ public class Wallet {
 								+ " is invalid. Tampering detected!");
 			return false;
 		}
+		if (!tx.verifyOutputs()) {
+			System.out.println("WARNING: transaction ID = " + tx.getHashID()
+								+ " has outputs its sender did not sign for!");
+			return false;
+		}
 
 		// Ensure that transaction does not already exist in the ledger.
-		// TODO: Optimize since this is time-consuming.
 		boolean exists;
-		if (this.getLocalLedger() == null)
+		if (ledger == null)
 			exists = false;
 		else
-			exists = this.getLocalLedger().transactionExists(tx);
-		return !exists;
+			exists = ledger.transactionExists(tx);
+		if (exists)
+			return false;
+
+		// Ensure that the inputs are unspent, so funds cannot be spent twice.
+		return ledger == null || ledger.hasUnspentInputs(tx);
 	}
 
 
@@ -280,10 +477,12 @@ public class Wallet {
 
 	// Method for transferring amounts of fund to multiple recipients.
 	// The method output the signed transaction.
-	public Transaction transferFund(PublicKey[] receivers, double[] fundToTransfer) {
+	// UTXOs used by earlier transactions still waiting to be mined are left out.
+	public synchronized Transaction transferFund(PublicKey[] receivers, double[] fundToTransfer) {
 		ArrayList<UTXO> unspent = new ArrayList<UTXO>();
 		double available = this.getLocalLedger().findUnspentUTXOs(this.getPublicKey(),
 				unspent);
+		available -= this.removeReservedUTXOs(unspent);
 		double totalNeeded = Transaction.TRANSACTION_FEE;
 		for (int i=0; i<fundToTransfer.length; i++)
 			totalNeeded += fundToTransfer[i];
@@ -312,12 +511,40 @@ public class Wallet {
 		boolean b = tx.prepareOutputUTXOs();
 		if (b) {
 			tx.signTheTransaction(this.getPrivateKey());
+			long expiry = UtilityMethods.getTimeStamp() + Configuration.pendingTransactionTimeout();
+			for (int i=0; i<inputs.size(); i++)
+				this.pendingInputs.put(inputs.get(i).getOutpoint(), expiry);
 			return tx;
 		}
 		else
 			return null;
 	}
 
+	// Method for removing from unspent the UTXOs reserved by pending transactions
+	// of this wallet, after dropping the reservations that have expired.
+	// Returns the total amount removed.
+	private double removeReservedUTXOs(ArrayList<UTXO> unspent) {
+		long now = UtilityMethods.getTimeStamp();
+		this.pendingInputs.values().removeIf(expiry -> expiry <= now);
+		double reserved = 0.0;
+		Iterator<UTXO> it = unspent.iterator();
+		while (it.hasNext()) {
+			UTXO utxo = it.next();
+			if (this.pendingInputs.containsKey(utxo.getOutpoint())) {
+				reserved += utxo.getFundTransferred();
+				it.remove();
+			}
+		}
+		return reserved;
+	}
+
+	// Method for making the inputs of a transaction that will not be mined
+	// available again for new transfers.
+	public synchronized void releaseInputs(Transaction tx) {
+		for (int i=0; i<tx.getNumberOfInputs(); i++)
+			this.pendingInputs.remove(tx.getInput(i));
+	}
+
 	// Overloaded method for single receiver.
 	public Transaction transferFund(PublicKey receiver, double fundToTransfer) {
 		PublicKey[] receivers = { receiver };
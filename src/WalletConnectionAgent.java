@@ -23,8 +23,8 @@ public class WalletConnectionAgent implements Runnable {
                 new ConcurrentLinkedQueue<Message>();
 
     // Local list of wallets in the system.
-    private Hashtable<String, KeyNamePair> allAddresses =
-                new Hashtable<String, KeyNamePair>();
+    private Hashtable<Address, KeyNamePair> allAddresses =
+                new Hashtable<Address, KeyNamePair>();
 
     private boolean forever = true;
     public final long sleepTime = 100;
@@ -142,19 +142,22 @@ public class WalletConnectionAgent implements Runnable {
 
     // Method for adding an address to the local list.
     public void addAddress(KeyNamePair address) {
-        this.allAddresses.put(UtilityMethods.getKeyString(address.getKey()), address);
+        this.allAddresses.put(Address.of(address.getKey()), address);
     }
 
     // Method for finding the matching name for a given public key.
     // If not found, simply returns the address.
     public String getNameFromAddress(PublicKey key) {
-        if (key.equals(this.wallet.getPublicKey()))
+        return this.getNameFromAddress(Address.of(key));
+    }
+
+    public String getNameFromAddress(Address address) {
+        if (address.equals(this.wallet.getAddress()))
             return this.wallet.getName();
-        String address = UtilityMethods.getKeyString(key);
         KeyNamePair knp = this.allAddresses.get(address);
         if (knp != null)
             return knp.getName();
-        else return address;
+        else return address.toString();
     }
 
     // Method for retrieving the server's address.
@@ -219,9 +219,10 @@ public class WalletMessageTaskManager implements Runnable {
         if (!this.thankYouTransactions.containsKey(tx.getHashID())) {
             int n = tx.getNumberOfOutputUTXOs();
             int total = 0;
+            Address self = this.wallet.getAddress();
             for (int i=0; i<n; i++) {
                 UTXO utxo = tx.getOutputUTXO(i);
-                if (utxo.getReceiver().equals(this.wallet.getPublicKey()))
+                if (self.equals(utxo.getReceiver()))
                     total += utxo.getFundTransferred();
             }
 
@@ -247,6 +248,10 @@ public class WalletMessageTaskManager implements Runnable {
         boolean b = this.wallet.updateLocalLedger(block);
         if (b)
             System.out.println("New block added to the local blockchain.");
+        else if (this.wallet.isOrphanBlock(block.getHashID())) {
+            // Its transactions are not lost: the block is added once its parent arrives
+            System.out.println("New block is kept until its parent arrives.");
+        }
         else {
             int size = block.getTotalNumberOfTransactions();
             int counter = 0;
@@ -262,6 +267,14 @@ public class WalletMessageTaskManager implements Runnable {
             System.out.printf("New block is rejected. Released %d unpublished transactions in the pool",
                                 counter);
         }
+        this.transactionsDisconnected(this.wallet.takeDisconnectedTransactions());
+    }
+
+    // Method called with the still valid transactions that a reorganization
+    // of the local blockchain has taken off the chain. A wallet has no pool to
+    // put them back in; miners override it.
+    protected void transactionsDisconnected(ArrayList<Transaction> transactions) {
+        // do nothing
     }
 
     // A private message of blockchain must be for this wallet alone.
@@ -275,6 +288,7 @@ public class WalletMessageTaskManager implements Runnable {
                 System.out.println("Blockchain updated!");
             else
                 System.out.println("New blockchain rejected. Retaining current local copy...");
+            this.transactionsDisconnected(this.wallet.takeDisconnectedTransactions());
         }
         else
             System.out.println("ERROR: Received blockchain private message intended for someone else! "
@@ -88,6 +88,7 @@ public class WalletSimulator extends JFrame {
                 catch (Exception e) {
                     // do nothing
                 }
+                wallet.closeBlockStore();
                 dispose();
                 System.exit(2);
             }
@@ -243,7 +244,9 @@ public class WalletSimulator extends JFrame {
                     + "3. Clicking 'show balance' will display your "
                     + "balance on the display board.\n"
                     + "4. Clicking 'display blockchain' will display "
-                    + "your local blockchain on the display board.");
+                    + "your local blockchain on the display board.\n"
+                    + "5. Miners can click 'show mining statistics' "
+                    + "to display their hash rate and mining efficiency.");
             }
         });
 
@@ -298,6 +301,18 @@ public class WalletSimulator extends JFrame {
         askMenu.add(askAddressesItem);
         askMenu.add(askBalanceItem);
         askMenu.add(displayBlockchain);
+
+        // For Miners, add an item to allow showing the mining metrics.
+        if (wallet instanceof Miner) {
+            JMenuItem displayMiningMetrics = new JMenuItem("show mining statistics");
+            displayMiningMetrics.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    displayMiningMetrics((Miner) wallet);
+                }
+            });
+            askMenu.add(displayMiningMetrics);
+        }
         bar.add(askMenu);
 
         // Add another menu "To Send" for sending messages.
@@ -371,8 +386,10 @@ public class WalletSimulator extends JFrame {
         ArrayList<UTXO> unspent = new ArrayList<UTXO>();
         ArrayList<Transaction> sentTx = new ArrayList<Transaction>();
         ArrayList<UTXO> rewards = new ArrayList<UTXO>();
+        ArrayList<Transaction> receivedTx = new ArrayList<Transaction>();
         double balance = ledger.findRelatedUTXOs(w.getPublicKey(), all,
                                             spent, unspent, sentTx, rewards);
+        ledger.findTransactionHistory(w.getPublicKey(), new ArrayList<Transaction>(), receivedTx);
         int level = 0;
         this.displayTab(sb, level, w.getName() + "{");
         this.displayTab(sb, level + 1, "All UTXOs:");
@@ -386,12 +403,37 @@ public class WalletSimulator extends JFrame {
             this.displayTab(sb, level + 1, "Mining Rewards:");
             this.displayUTXOs(sb, rewards, level + 2);
         }
+        this.displayTab(sb, level + 1, "Transactions sent: " + sentTx.size()
+                + ", transactions received: " + receivedTx.size());
         this.displayTab(sb, level + 1, "Balance = " + balance);
         this.displayTab(sb, level, "}");
         String s = sb.toString();
         this.messageFrame.setMessage(s);
     }
 
+    // Method for displaying the mining metrics of a miner on the MessageFrame.
+    protected void displayMiningMetrics(Miner m) {
+        StringBuilder sb = new StringBuilder();
+        MiningMetrics metrics = m.getMiningMetrics();
+        int level = 0;
+        this.displayTab(sb, level, m.getName() + " mining statistics{");
+        this.displayTab(sb, level + 1, String.format("Hash rate: %.1f hashes/s",
+                metrics.getHashesPerSecond()));
+        this.displayTab(sb, level + 1, "Total hashes: " + metrics.getTotalHashes());
+        this.displayTab(sb, level + 1, "Blocks solved: " + metrics.getBlocksSolved());
+        this.displayTab(sb, level + 1, String.format("Average attempts per block: %.0f",
+                metrics.getAverageAttemptsPerBlock()));
+        this.displayTab(sb, level + 1, String.format("Average time to solution: %.0f ms",
+                metrics.getAverageTimeToSolutionMillis()));
+        this.displayTab(sb, level + 1, "Aborted (stale) blocks: " + metrics.getBlocksAborted()
+                + ", wasted hashes: " + metrics.getStaleHashes());
+        this.displayTab(sb, level + 1, "Blocks won: " + metrics.getBlocksWon()
+                + ", blocks lost: " + metrics.getBlocksLost()
+                + String.format(", win share: %.1f%%", 100 * metrics.getWinShare()));
+        this.displayTab(sb, level, "}");
+        messageFrame.setMessage(sb.toString());
+    }
+
     // Prepare the content of UTXOs into a text storage: StringBuilder.
     private void displayUTXOs(StringBuilder sb, ArrayList<UTXO> utxos, int level) {
         for (int i=0; i<utxos.size(); i++) {
@@ -399,8 +441,8 @@ public class WalletSimulator extends JFrame {
             if (this.showPublicKeyInBalance()) {
                 this.displayTab(sb, level, "Fund: "
                     + utxo.getFundTransferred() + ", receiver: "
-                    + UtilityMethods.getKeyString(utxo.getReceiver())
-                    + ", Sender: " + UtilityMethods.getKeyString(utxo.getSender()));
+                    + utxo.getReceiver()
+                    + ", Sender: " + utxo.getSender());
             }
             else {
                 String ss = "Fund: " + utxo.getFundTransferred() + ", Receiver: "